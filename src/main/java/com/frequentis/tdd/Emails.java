@@ -0,0 +1,22 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd;
+
+import java.util.Locale;
+
+public final class Emails {
+
+    private Emails() {
+    }
+
+    /**
+     * @return the address in the form used to decide whether two addresses
+     *         belong to the same user: trimmed and lower-cased
+     */
+    public static String normalize(final String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd;
+
+import com.google.common.collect.Lists;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.JdbcUpdateAffectedIncorrectNumberOfRowsException;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Plain JDBC implementation of {@link UserCrudRepository}, selected with
+ * {@code com.frequentis.tdd.repository=jdbc}. Rows are mapped straight to
+ * {@link User} without a persistence context; the SQL is constant, so the
+ * pool's statement cache serves the prepared statements. Like the JPA
+ * mapping, reads and deletes skip soft-deleted rows, and updates never
+ * change a user's tenant.
+ */
+@Repository
+@Primary
+@ConditionalOnProperty(name = "com.frequentis.tdd.repository", havingValue = "jdbc")
+public class JdbcUserCrudRepository implements UserCrudRepository {
+    private static final String COLUMNS = "id, tenant_id, email, first_name, last_name";
+    private static final String SELECT_LIVE = "SELECT " + COLUMNS + " FROM users WHERE deleted = FALSE";
+    private static final String FIND_BY_ID = SELECT_LIVE + " AND id = ?";
+    private static final String FIND_BY_TENANT = SELECT_LIVE + " AND tenant_id = ?";
+    private static final String FIND_BY_TENANT_AND_ID = FIND_BY_TENANT + " AND id = ?";
+    private static final String FIND_BY_TENANT_AND_NORMALIZED_EMAIL = FIND_BY_TENANT + " AND lookup_email = ? ORDER BY id LIMIT 1";
+    private static final String FIND_BY_TENANT_AND_IDS = SELECT_LIVE + " AND tenant_id = :tenantId AND id IN (:ids)";
+    private static final String FIND_BY_IDS = SELECT_LIVE + " AND id IN (:ids)";
+    private static final String COUNT = "SELECT COUNT(*) FROM users WHERE deleted = FALSE";
+    private static final String COUNT_BY_ID = COUNT + " AND id = ?";
+    private static final String COUNT_BY_TENANT_AND_ID = COUNT + " AND tenant_id = ? AND id = ?";
+    private static final String INSERT =
+            "INSERT INTO users (tenant_id, email, email_normalized, first_name, last_name) VALUES (?, ?, ?, ?, ?)";
+    private static final String UPDATE =
+            "UPDATE users SET email = ?, email_normalized = ?, first_name = ?, last_name = ?"
+            + " WHERE id = ? AND tenant_id = ? AND deleted = FALSE";
+    private static final String DELETE_BY_ID = "DELETE FROM users WHERE id = ? AND deleted = FALSE";
+    private static final String DELETE_ALL = "DELETE FROM users WHERE deleted = FALSE";
+    private static final String SOFT_DELETE = "UPDATE users SET deleted = TRUE WHERE tenant_id = ? AND id = ? AND deleted = FALSE";
+    private static final String SOFT_DELETE_ALL =
+            "UPDATE users SET deleted = TRUE WHERE tenant_id = :tenantId AND id IN (:ids) AND deleted = FALSE";
+    private static final String HARD_DELETE = "DELETE FROM users WHERE tenant_id = ? AND id = ? AND deleted = FALSE";
+    private static final String HARD_DELETE_ALL = "DELETE FROM users WHERE tenant_id = :tenantId AND id IN (:ids) AND deleted = FALSE";
+    private static final String PURGE_TOMBSTONES = "DELETE FROM users WHERE deleted = TRUE LIMIT ?";
+
+    private static final RowMapper<User> USER_ROW_MAPPER = JdbcUserCrudRepository::mapUser;
+
+    private final NamedParameterJdbcTemplate namedJdbc;
+    private final JdbcOperations jdbc;
+
+    @Autowired
+    public JdbcUserCrudRepository(final NamedParameterJdbcTemplate namedJdbc) {
+        this.namedJdbc = namedJdbc;
+        this.jdbc = namedJdbc.getJdbcOperations();
+    }
+
+    @Override
+    public User findByTenantIdAndNormalizedEmail(final String tenantId, final String normalizedEmail) {
+        return single(jdbc.query(FIND_BY_TENANT_AND_NORMALIZED_EMAIL, USER_ROW_MAPPER, tenantId, normalizedEmail));
+    }
+
+    @Override
+    public User findByTenantIdAndId(final String tenantId, final Long id) {
+        return single(jdbc.query(FIND_BY_TENANT_AND_ID, USER_ROW_MAPPER, tenantId, id));
+    }
+
+    @Override
+    public List<User> findByTenantId(final String tenantId) {
+        return jdbc.query(FIND_BY_TENANT, USER_ROW_MAPPER, tenantId);
+    }
+
+    @Override
+    public List<User> findByTenantIdAndIdIn(final String tenantId, final Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return namedJdbc.query(FIND_BY_TENANT_AND_IDS, tenantAndIds(tenantId, ids), USER_ROW_MAPPER);
+    }
+
+    @Override
+    public long countByTenantIdAndId(final String tenantId, final Long id) {
+        return jdbc.queryForObject(COUNT_BY_TENANT_AND_ID, Long.class, tenantId, id);
+    }
+
+    @Override
+    public int softDelete(final String tenantId, final Long id) {
+        return jdbc.update(SOFT_DELETE, tenantId, id);
+    }
+
+    @Override
+    public int softDeleteAll(final String tenantId, final Collection<Long> ids) {
+        return ids.isEmpty() ? 0 : namedJdbc.update(SOFT_DELETE_ALL, tenantAndIds(tenantId, ids));
+    }
+
+    @Override
+    public int hardDelete(final String tenantId, final Long id) {
+        return jdbc.update(HARD_DELETE, tenantId, id);
+    }
+
+    @Override
+    public int hardDeleteAll(final String tenantId, final Collection<Long> ids) {
+        return ids.isEmpty() ? 0 : namedJdbc.update(HARD_DELETE_ALL, tenantAndIds(tenantId, ids));
+    }
+
+    @Override
+    public int purgeTombstones(final int limit) {
+        return jdbc.update(PURGE_TOMBSTONES, limit);
+    }
+
+    /**
+     * Inserts users without an id (or with id 0, as built by the short
+     * {@link User} constructor) and updates the live row of the user's id
+     * and tenant otherwise. Returns a new instance carrying the stored id,
+     * as {@code merge} does on the JPA path.
+     *
+     * @throws JdbcUpdateAffectedIncorrectNumberOfRowsException if no live row of
+     *         the user's tenant has its id, e.g. because it was deleted meanwhile
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <S extends User> S save(final S user) {
+        if (user.getId() != null && user.getId() != 0) {
+            int updated = jdbc.update(UPDATE, user.getEmail(), user.getNormalizedEmail(), user.getFirstName(), user.getLastName(),
+                                      user.getId(), user.getTenantId());
+            if (updated != 1) {
+                throw new JdbcUpdateAffectedIncorrectNumberOfRowsException(UPDATE, 1, updated);
+            }
+            return (S) copy(user.getId(), user);
+        }
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(INSERT, Statement.RETURN_GENERATED_KEYS);
+            statement.setString(1, user.getTenantId());
+            statement.setString(2, user.getEmail());
+            statement.setString(3, user.getNormalizedEmail());
+            statement.setString(4, user.getFirstName());
+            statement.setString(5, user.getLastName());
+            return statement;
+        }, keyHolder);
+        return (S) copy(keyHolder.getKey().longValue(), user);
+    }
+
+    @Override
+    public <S extends User> Iterable<S> save(final Iterable<S> users) {
+        List<S> saved = new ArrayList<>();
+        for (S user : users) {
+            saved.add(save(user));
+        }
+        return saved;
+    }
+
+    @Override
+    public User findOne(final Long id) {
+        return single(jdbc.query(FIND_BY_ID, USER_ROW_MAPPER, id));
+    }
+
+    @Override
+    public boolean exists(final Long id) {
+        return jdbc.queryForObject(COUNT_BY_ID, Long.class, id) > 0;
+    }
+
+    @Override
+    public Iterable<User> findAll() {
+        return jdbc.query(SELECT_LIVE, USER_ROW_MAPPER);
+    }
+
+    @Override
+    public Iterable<User> findAll(final Iterable<Long> ids) {
+        List<Long> idList = Lists.newArrayList(ids);
+        if (idList.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return namedJdbc.query(FIND_BY_IDS, new MapSqlParameterSource("ids", idList), USER_ROW_MAPPER);
+    }
+
+    @Override
+    public long count() {
+        return jdbc.queryForObject(COUNT, Long.class);
+    }
+
+    /**
+     * Like the JPA repository, only removes a live user and fails if there is none.
+     */
+    @Override
+    public void delete(final Long id) {
+        if (jdbc.update(DELETE_BY_ID, id) == 0) {
+            throw new EmptyResultDataAccessException(String.format("No %s entity with id %s exists!", User.class, id), 1);
+        }
+    }
+
+    @Override
+    public void delete(final User user) {
+        delete(user.getId());
+    }
+
+    @Override
+    public void delete(final Iterable<? extends User> users) {
+        for (User user : users) {
+            delete(user);
+        }
+    }
+
+    @Override
+    public void deleteAll() {
+        jdbc.update(DELETE_ALL);
+    }
+
+    private static MapSqlParameterSource tenantAndIds(final String tenantId, final Collection<Long> ids) {
+        return new MapSqlParameterSource("tenantId", tenantId).addValue("ids", ids);
+    }
+
+    private static User single(final List<User> users) {
+        return users.isEmpty() ? null : users.get(0);
+    }
+
+    private static User copy(final Long id, final User user) {
+        User stored = new User(id, user.getFirstName(), user.getLastName(), user.getEmail());
+        stored.setTenantId(user.getTenantId());
+        return stored;
+    }
+
+    private static User mapUser(final ResultSet resultSet, final int rowNumber) throws SQLException {
+        User user = new User(resultSet.getLong(1), resultSet.getString(4), resultSet.getString(5), resultSet.getString(3));
+        user.setTenantId(resultSet.getString(2));
+        return user;
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Reads and writes users in the binary Smile encoding of the JSON data model.
+ * Selected with {@code Accept}/{@code Content-Type: application/x-jackson-smile}.
+ * The mapper gets the same settings and modules as the JSON one.
+ */
+public class SmileHttpMessageConverter extends AbstractJackson2HttpMessageConverter {
+    public static final MediaType APPLICATION_SMILE = new MediaType("application", "x-jackson-smile");
+
+    /**
+     * {@link Jackson2ObjectMapperBuilder#configure(ObjectMapper)} leaves the
+     * shared builder untouched, unlike setting its factory.
+     */
+    public SmileHttpMessageConverter(final Jackson2ObjectMapperBuilder objectMapperBuilder) {
+        super(configured(objectMapperBuilder), APPLICATION_SMILE);
+    }
+
+    private static ObjectMapper configured(final Jackson2ObjectMapperBuilder objectMapperBuilder) {
+        ObjectMapper objectMapper = new ObjectMapper(new SmileFactory());
+        objectMapperBuilder.configure(objectMapper);
+        return objectMapper;
+    }
+}
@@ -5,10 +5,14 @@
  */
 package com.frequentis.tdd;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import java.util.Objects;
 import javax.persistence.*;
+import org.hibernate.annotations.Where;
 
 @Entity
+@Table(name = "users")
+@Where(clause = "deleted = 0")
 public class User {
 
     @Id
@@ -22,6 +26,12 @@ public class User {
     private String lastName;
     @Column
     private String email;
+    @Column(name = "email_normalized")
+    @JsonIgnore
+    private String normalizedEmail;
+    @Column
+    @JsonIgnore
+    private String tenantId;
 
     public User(){
     }
@@ -37,10 +47,23 @@ public class User {
         this.email = email;
     }
 
+    /**
+     * Detached copy, for handing one loaded user to several callers.
+     */
+    public User(final User other) {
+        this(other.id, other.firstName, other.lastName, other.email);
+        this.normalizedEmail = other.normalizedEmail;
+        this.tenantId = other.tenantId;
+    }
+
     public Long getId() {
         return id;
     }
 
+    public void setId(final Long id) {
+        this.id = id;
+    }
+
     public String getFirstName() {
         return firstName;
     }
@@ -65,6 +88,28 @@ public class User {
         this.email = email;
     }
 
+    /**
+     * @return the address as used for lookups and the uniqueness check, see {@link Emails#normalize(String)}
+     */
+    @JsonIgnore
+    public String getNormalizedEmail() {
+        return Emails.normalize(email);
+    }
+
+    public String getTenantId() {
+        return tenantId;
+    }
+
+    public void setTenantId(final String tenantId) {
+        this.tenantId = tenantId;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void normalizeEmail() {
+        normalizedEmail = getNormalizedEmail();
+    }
+
     @Override
     public boolean equals(final Object o) {
         if (this == o) {
@@ -79,7 +124,8 @@ public class User {
         return Objects.equals(id, that.id)
                 && Objects.equals(firstName, that.firstName)
                 && Objects.equals(lastName, that.lastName)
-                && Objects.equals(email, that.email);
+                && Objects.equals(email, that.email)
+                && Objects.equals(tenantId, that.tenantId);
     }
 
     @Override
@@ -88,7 +134,8 @@ public class User {
                 id,
                 firstName,
                 lastName,
-                email);
+                email,
+                tenantId);
     }
 
     @Override
@@ -98,6 +145,7 @@ public class User {
                 ", firstName='" + firstName + '\'' +
                 ", lastName='" + lastName + '\'' +
                 ", email='" + email + '\'' +
+                ", tenantId='" + tenantId + '\'' +
                 '}';
     }
 }
@@ -5,11 +5,20 @@
  */
 package com.frequentis.tdd;
 
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.Striped;
 import java.io.IOException;
 import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+import java.util.regex.Pattern;
 import org.apache.commons.validator.routines.EmailValidator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -21,30 +30,59 @@ import org.springframework.web.multipart.MultipartFile;
 
 import com.frequentis.tdd.exceptions.EmailAlreadyUsedException;
 import com.frequentis.tdd.exceptions.FileStorageNotPreparedException;
+import com.frequentis.tdd.exceptions.ImageNotFoundException;
 import com.frequentis.tdd.exceptions.InvalidEmailException;
+import com.frequentis.tdd.exceptions.InvalidUserException;
+import com.frequentis.tdd.exceptions.TooManyIdsException;
 import com.frequentis.tdd.exceptions.UserNotFoundException;
 import com.frequentis.tdd.storage.FileStorage;
+import com.frequentis.tdd.storage.StorageQuota;
+import com.frequentis.tdd.tenant.TenantContext;
+import com.frequentis.tdd.tracing.Span;
+import com.frequentis.tdd.tracing.Tracing;
 
 @RestController
 @RequestMapping(value = "/user")
 public class UserController {
+    private static final String DEFAULT_IMAGE_NAME = "image";
+    private static final int MAX_IMAGE_NAME_LENGTH = 100;
+    private static final Pattern UNSAFE_FILE_NAME_CHARACTERS = Pattern.compile("[^A-Za-z0-9._-]");
+    private static final Pattern LEADING_DOTS = Pattern.compile("^\\.+");
+    private static final int EMAIL_LOCK_STRIPES = 1024;
+    private static final String UNIQUE_EMAIL_INDEX = "USERS_TENANT_UNIQUE_EMAIL";
+
     private final UserRepository userRepository;
     private final FileStorage fileStorage;
+    private final StorageQuota storageQuota;
+    private final Striped<Lock> emailLocks = Striped.lock(EMAIL_LOCK_STRIPES);
+    private final int maxBulkDeleteIds;
 
     @Autowired
-    public UserController(final UserRepository userRepository, final FileStorage fileStorage) {
+    public UserController(final UserRepository userRepository, final @Lazy FileStorage fileStorage, final StorageQuota storageQuota,
+                          final @Value("${com.frequentis.tdd.bulkDelete.maxIds:1000}") int maxBulkDeleteIds) {
         this.userRepository = userRepository;
         this.fileStorage = fileStorage;
+        this.storageQuota = storageQuota;
+        this.maxBulkDeleteIds = maxBulkDeleteIds;
     }
 
+    /**
+     * Always creates a new user; an id sent in the body is ignored.
+     */
     @RequestMapping(value = "/", method = RequestMethod.POST)
     @ResponseBody
     public User create(@RequestBody User user) {
+        user.setId(null);
         if (isValidEmail(user)){
-            if (! isEmailAlreadyUsedByOtherUser(user)) {
-                return userRepository.save(user);
-            } else {
-                throw new EmailAlreadyUsedException();
+            Lock emailLock = lockEmail(user);
+            try {
+                if (! isEmailAlreadyUsedByOtherUser(user)) {
+                    return saveWithUniqueEmail(user);
+                } else {
+                    throw new EmailAlreadyUsedException();
+                }
+            } finally {
+                emailLock.unlock();
             }
         } else {
             throw new InvalidEmailException();
@@ -68,10 +106,15 @@ public class UserController {
     public User update(@RequestBody User user) {
         if (isValidEmail(user)){
             if (userRepository.exists(user.getId())) {
-                if (! isEmailAlreadyUsedByOtherUser(user)) {
-                    return userRepository.save(user);
-                } else {
-                    throw new EmailAlreadyUsedException();
+                Lock emailLock = lockEmail(user);
+                try {
+                    if (! isEmailAlreadyUsedByOtherUser(user)) {
+                        return saveWithUniqueEmail(user);
+                    } else {
+                        throw new EmailAlreadyUsedException();
+                    }
+                } finally {
+                    emailLock.unlock();
                 }
             } else {
                 throw new UserNotFoundException();
@@ -84,28 +127,122 @@ public class UserController {
     @RequestMapping(value = "/{id}", method = RequestMethod.DELETE)
     @ResponseBody
     public void delete(@PathVariable Long id) {
-        if (userRepository.exists(id)) {
-            userRepository.delete(id);
-        } else {
+        if (! userRepository.delete(id)) {
             throw new UserNotFoundException();
         }
     }
 
+    @RequestMapping(value = "/bulkDelete", method = RequestMethod.POST)
+    @ResponseBody
+    public int deleteAll(@RequestBody List<Long> ids) {
+        if (ids.size() > maxBulkDeleteIds) {
+            throw new TooManyIdsException();
+        }
+        return userRepository.deleteAll(ids);
+    }
+
+    /**
+     * Stores the image under its original file name, scoped to the caller's
+     * tenant and the given user, and accounts it to that user's quota.
+     */
     @RequestMapping(value = "uploadImage", method = RequestMethod.POST)
-    public void uploadImage(final @RequestParam("file") MultipartFile file) throws IOException {
+    public void uploadImage(final @RequestParam("file") MultipartFile file,
+                            final @RequestParam(value = "userId", required = false) Long userId) throws IOException {
         if (fileStorage.exists()){
-            fileStorage.store(file.getName(), file.getBytes());
+            String owner = imageOwner(userId);
+            String name = imageName(owner, file.getOriginalFilename());
+            try (StorageQuota.Reservation reservation = storageQuota.reserve(owner, name, file.getSize())) {
+                try (Span ignored = Tracing.span("storage.store")) {
+                    fileStorage.store(name, file.getBytes());
+                }
+                reservation.commit();
+            }
         } else {
             throw new FileStorageNotPreparedException();
         }
     }
 
+    @RequestMapping(value = "uploadImage", method = RequestMethod.DELETE)
+    public void deleteImage(final @RequestParam("name") String originalFilename,
+                            final @RequestParam(value = "userId", required = false) Long userId) throws IOException {
+        String name = imageName(imageOwner(userId), originalFilename);
+        if (!fileStorage.delete(name)) {
+            throw new ImageNotFoundException();
+        }
+        storageQuota.release(name);
+    }
+
+    /**
+     * The quota owner is the caller's tenant plus one of its existing users,
+     * so inventing or omitting user ids does not yield fresh quota.
+     */
+    private String imageOwner(final Long userId) {
+        if (userId != null && !userRepository.exists(userId)) {
+            throw new UserNotFoundException();
+        }
+        return StorageQuota.owner(TenantContext.current(), userId);
+    }
+
+    /**
+     * Tenant ids contain no dots and the user part is numeric or
+     * {@value StorageQuota#ANONYMOUS_OWNER}, so names of different owners cannot collide.
+     */
+    static String imageName(final String owner, final String originalFilename) {
+        String sanitized = originalFilename == null ? "" : UNSAFE_FILE_NAME_CHARACTERS.matcher(originalFilename).replaceAll("_");
+        sanitized = LEADING_DOTS.matcher(sanitized).replaceFirst("");
+        if (sanitized.isEmpty()) {
+            sanitized = DEFAULT_IMAGE_NAME;
+        }
+        if (sanitized.length() > MAX_IMAGE_NAME_LENGTH) {
+            sanitized = sanitized.substring(sanitized.length() - MAX_IMAGE_NAME_LENGTH);
+        }
+        return owner.replace(StorageQuota.OWNER_SEPARATOR, '.') + '.' + sanitized;
+    }
+
+    /**
+     * Serializes creates and updates of the same address within a tenant, so
+     * the uniqueness check and the save cannot interleave with another
+     * request's; different addresses almost always map to different stripes.
+     */
+    private Lock lockEmail(final User user) {
+        Lock lock = emailLocks.get(TenantContext.current() + '\u0000' + Emails.normalize(user.getEmail()));
+        lock.lock();
+        return lock;
+    }
+
+    /**
+     * The unique index on users backs the check when another instance saved
+     * the same address concurrently. Other violations, such as values too
+     * long for their column, are the client's fault.
+     */
+    private User saveWithUniqueEmail(final User user) {
+        try {
+            return userRepository.save(user);
+        } catch (DataIntegrityViolationException e) {
+            if (violatesUniqueEmail(e)) {
+                throw new EmailAlreadyUsedException();
+            }
+            throw new InvalidUserException();
+        }
+    }
+
+    private static boolean violatesUniqueEmail(final DataIntegrityViolationException e) {
+        for (Throwable cause : Throwables.getCausalChain(e)) {
+            if (cause.getMessage() != null && cause.getMessage().toUpperCase(Locale.ROOT).contains(UNIQUE_EMAIL_INDEX)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private boolean isEmailAlreadyUsedByOtherUser(final User user) {
         Optional<User> dbUser = userRepository.findByEmail(user.getEmail());
-        return dbUser.isPresent() && dbUser.get().getId() != user.getId();
+        return dbUser.isPresent() && !Objects.equals(dbUser.get().getId(), user.getId());
     }
 
     private boolean isValidEmail(final @RequestBody User user) {
-        return EmailValidator.getInstance().isValid(user.getEmail());
+        try (Span ignored = Tracing.span("validation")) {
+            return EmailValidator.getInstance().isValid(user.getEmail());
+        }
     }
 }
@@ -1,7 +1,52 @@
 package com.frequentis.tdd;
 
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface UserCrudRepository extends CrudRepository<User, Long> {
-    User findByEmail(String email);
+    /**
+     * Also finds rows whose {@code email_normalized} is not backfilled yet,
+     * through the computed {@code lookup_email} column.
+     */
+    @Query(value = "SELECT * FROM users WHERE tenant_id = :tenantId AND lookup_email = :normalizedEmail AND deleted = FALSE"
+                   + " ORDER BY id LIMIT 1", nativeQuery = true)
+    User findByTenantIdAndNormalizedEmail(@Param("tenantId") String tenantId, @Param("normalizedEmail") String normalizedEmail);
+
+    User findByTenantIdAndId(String tenantId, Long id);
+
+    List<User> findByTenantId(String tenantId);
+
+    List<User> findByTenantIdAndIdIn(String tenantId, Collection<Long> ids);
+
+    long countByTenantIdAndId(String tenantId, Long id);
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE users SET deleted = TRUE WHERE tenant_id = :tenantId AND id = :id AND deleted = FALSE", nativeQuery = true)
+    int softDelete(@Param("tenantId") String tenantId, @Param("id") Long id);
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE users SET deleted = TRUE WHERE tenant_id = :tenantId AND id IN (:ids) AND deleted = FALSE", nativeQuery = true)
+    int softDeleteAll(@Param("tenantId") String tenantId, @Param("ids") Collection<Long> ids);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM users WHERE tenant_id = :tenantId AND id = :id AND deleted = FALSE", nativeQuery = true)
+    int hardDelete(@Param("tenantId") String tenantId, @Param("id") Long id);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM users WHERE tenant_id = :tenantId AND id IN (:ids) AND deleted = FALSE", nativeQuery = true)
+    int hardDeleteAll(@Param("tenantId") String tenantId, @Param("ids") Collection<Long> ids);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM users WHERE deleted = TRUE LIMIT :limit", nativeQuery = true)
+    int purgeTombstones(@Param("limit") int limit);
 }
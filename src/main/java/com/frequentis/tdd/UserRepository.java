@@ -5,42 +5,279 @@
  */
 package com.frequentis.tdd;
 
-import com.google.common.collect.Lists;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
 import org.springframework.stereotype.Repository;
 
+import com.frequentis.tdd.coalescing.BatchLoader;
+import com.frequentis.tdd.coalescing.SingleFlight;
+import com.frequentis.tdd.exceptions.UserNotFoundException;
+import com.frequentis.tdd.readmodel.UserReadModel;
+import com.frequentis.tdd.startup.SchemaInitializer;
+import com.frequentis.tdd.tenant.TenantContext;
+import com.frequentis.tdd.tenant.TenantRegistry;
+import com.frequentis.tdd.tracing.Span;
+import com.frequentis.tdd.tracing.Tracing;
+
+/**
+ * All operations are scoped to the tenant of the current request, see {@link TenantContext}.
+ */
 @Repository
+@DependsOn(SchemaInitializer.BEAN_NAME)
 public class UserRepository {
+    private static final int VERSION_STRIPES = 64;
+
     private final UserCrudRepository userCrudRepository;
+    private final SingleFlight<TenantKey<Long>, User> findOneFlights = new SingleFlight<>();
+    private final SingleFlight<TenantKey<String>, Optional<User>> findByEmailFlights = new SingleFlight<>();
+    private final BatchLoader<TenantKey<Long>, User> findOneBatches;
+    private final long batchWindowMicros;
+    private final boolean softDelete;
+    private final UserReadModel readModel;
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
 
-    @Autowired
     public UserRepository(final UserCrudRepository userCrudRepository) {
+        this(userCrudRepository, 0, 1, false, false, new TenantRegistry(""));
+    }
+
+    /**
+     * @param batchWindowMicros how long a lookup by id waits for other ids to
+     *                          merge into one {@code IN (...)} query; 0 disables batching
+     * @param softDelete        whether deletes only mark rows, leaving them to {@link #purgeTombstones(int)}
+     * @param readModel         whether reads are served from memory, see {@link UserReadModel}
+     * @param tenantRegistry    the tenants the read model may hold
+     */
+    @Autowired
+    public UserRepository(final UserCrudRepository userCrudRepository,
+                          final @Value("${com.frequentis.tdd.lookup.batchWindowMicros:0}") long batchWindowMicros,
+                          final @Value("${com.frequentis.tdd.lookup.batchMaxSize:100}") int batchMaxSize,
+                          final @Value("${com.frequentis.tdd.softDelete:false}") boolean softDelete,
+                          final @Value("${com.frequentis.tdd.readModel.enabled:false}") boolean readModel,
+                          final TenantRegistry tenantRegistry) {
         this.userCrudRepository = userCrudRepository;
+        this.batchWindowMicros = batchWindowMicros;
+        this.findOneBatches = new BatchLoader<>(this::findAllById, batchWindowMicros, batchMaxSize);
+        this.softDelete = softDelete;
+        this.readModel = readModel ? new UserReadModel(userCrudRepository, tenantRegistry) : null;
     }
 
+    /**
+     * Matches case-insensitively, see {@link Emails#normalize(String)}.
+     */
     public Optional<User> findByEmail(final String email) {
-        return Optional.ofNullable(userCrudRepository.findByEmail(email));
+        String tenant = TenantContext.current();
+        String normalizedEmail = Emails.normalize(email);
+        try (Span ignored = Tracing.span("repository.findByEmail")) {
+            if (readModel != null) {
+                return readModel.findByEmail(tenant, normalizedEmail);
+            }
+            return findByEmailFlights.execute(new TenantKey<>(tenant, normalizedEmail, version(tenant)),
+                                              () -> Optional.ofNullable(userCrudRepository.findByTenantIdAndNormalizedEmail(tenant, normalizedEmail)))
+                                     .map(User::new);
+        }
     }
 
+    /**
+     * Inserts users without an id; users with an id must already belong to
+     * the current tenant, so a write never moves a user between tenants.
+     *
+     * @throws UserNotFoundException if the user to update is not present in the current tenant
+     */
     public User save(final User user) {
-        return userCrudRepository.save(user);
+        String tenant = TenantContext.current();
+        try (Span ignored = Tracing.span("repository.save")) {
+            if (!isNew(user) && userCrudRepository.countByTenantIdAndId(tenant, user.getId()) == 0) {
+                throw new UserNotFoundException();
+            }
+            user.setTenantId(tenant);
+            User saved = userCrudRepository.save(user);
+            incrementVersion(tenant);
+            if (readModel != null && saved != null) {
+                readModel.refresh(tenant, Collections.singleton(saved.getId()));
+            }
+            return saved;
+        }
     }
 
     public List<User> findAll() {
-        return Lists.newArrayList(userCrudRepository.findAll());
+        String tenant = TenantContext.current();
+        try (Span ignored = Tracing.span("repository.findAll")) {
+            return readModel != null ? readModel.findAll(tenant) : userCrudRepository.findByTenantId(tenant);
+        }
     }
 
     public User findOne(final Long id) {
-        return userCrudRepository.findOne(id);
+        String tenant = TenantContext.current();
+        try (Span ignored = Tracing.span("repository.findOne")) {
+            if (readModel != null) {
+                return readModel.findOne(tenant, id);
+            }
+            TenantKey<Long> key = new TenantKey<>(tenant, id, version(tenant));
+            return detach(findOneFlights.execute(key, () -> batchWindowMicros > 0
+                    ? findOneBatches.load(key)
+                    : userCrudRepository.findByTenantIdAndId(tenant, id)));
+        }
     }
 
     public boolean exists(final Long id) {
-        return userCrudRepository.exists(id);
+        String tenant = TenantContext.current();
+        try (Span ignored = Tracing.span("repository.exists")) {
+            return readModel != null
+                    ? readModel.findOne(tenant, id) != null
+                    : userCrudRepository.countByTenantIdAndId(tenant, id) > 0;
+        }
+    }
+
+    /**
+     * @return whether a user with the given id existed and was deleted
+     */
+    public boolean delete(final Long id) {
+        String tenant = TenantContext.current();
+        try (Span ignored = Tracing.span("repository.delete")) {
+            boolean deleted = (softDelete ? userCrudRepository.softDelete(tenant, id) : userCrudRepository.hardDelete(tenant, id)) > 0;
+            if (deleted) {
+                incrementVersion(tenant);
+                refreshReadModel(tenant, Collections.singleton(id));
+            }
+            return deleted;
+        }
+    }
+
+    /**
+     * @return the number of users deleted
+     */
+    public int deleteAll(final Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        String tenant = TenantContext.current();
+        try (Span ignored = Tracing.span("repository.deleteAll")) {
+            int deleted = softDelete ? userCrudRepository.softDeleteAll(tenant, ids) : userCrudRepository.hardDeleteAll(tenant, ids);
+            incrementVersion(tenant);
+            refreshReadModel(tenant, ids);
+            return deleted;
+        }
+    }
+
+    /**
+     * Physically removes at most {@code limit} soft-deleted users of any tenant.
+     *
+     * @return the number of rows removed
+     */
+    public int purgeTombstones(final int limit) {
+        return userCrudRepository.purgeTombstones(limit);
+    }
+
+    /**
+     * @return a counter that changes after every committed write to a user of
+     *         the current tenant; tenants share {@value #VERSION_STRIPES}
+     *         counters, so it may also change on writes to other tenants
+     */
+    public long version() {
+        return version(TenantContext.current());
+    }
+
+    private long version(final String tenant) {
+        return versions.get(versionStripe(tenant));
+    }
+
+    private void incrementVersion(final String tenant) {
+        versions.incrementAndGet(versionStripe(tenant));
+    }
+
+    private static int versionStripe(final String tenant) {
+        return (tenant.hashCode() & Integer.MAX_VALUE) % VERSION_STRIPES;
+    }
+
+    private void refreshReadModel(final String tenant, final Collection<Long> ids) {
+        if (readModel != null) {
+            readModel.refresh(tenant, ids);
+        }
+    }
+
+    /**
+     * Coalesced results are shared between request threads, so each caller
+     * gets its own copy instead of an entity managed by another request.
+     */
+    private static User detach(final User user) {
+        return user != null ? new User(user) : null;
+    }
+
+    private static boolean isNew(final User user) {
+        return user.getId() == null || user.getId() == 0;
     }
 
-    public void delete(final Long id) {
-        userCrudRepository.delete(id);
+    /**
+     * One batch may mix tenants, so ids are queried per tenant and every
+     * requested key gets the user of its own tenant.
+     */
+    private Map<TenantKey<Long>, User> findAllById(final Collection<TenantKey<Long>> keys) {
+        Map<String, Set<Long>> idsByTenant = new HashMap<>();
+        for (TenantKey<Long> key : keys) {
+            idsByTenant.computeIfAbsent(key.tenant, tenant -> new HashSet<>()).add(key.key);
+        }
+
+        Map<String, Map<Long, User>> usersByTenant = new HashMap<>();
+        for (Map.Entry<String, Set<Long>> entry : idsByTenant.entrySet()) {
+            Map<Long, User> users = new HashMap<>();
+            for (User user : userCrudRepository.findByTenantIdAndIdIn(entry.getKey(), entry.getValue())) {
+                users.put(user.getId(), user);
+            }
+            usersByTenant.put(entry.getKey(), users);
+        }
+
+        Map<TenantKey<Long>, User> result = new HashMap<>();
+        for (TenantKey<Long> key : keys) {
+            result.put(key, usersByTenant.get(key.tenant).get(key.key));
+        }
+        return result;
+    }
+
+    /**
+     * Includes the tenant's {@link #version()}, so a lookup issued after a
+     * write never joins a flight started before it.
+     */
+    private static final class TenantKey<K> {
+        private final String tenant;
+        private final K key;
+        private final long version;
+
+        private TenantKey(final String tenant, final K key, final long version) {
+            this.tenant = tenant;
+            this.key = key;
+            this.version = version;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            TenantKey<?> that = (TenantKey<?>) o;
+            return version == that.version
+                    && Objects.equals(tenant, that.tenant)
+                    && Objects.equals(key, that.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(tenant, key, version);
+        }
     }
 }
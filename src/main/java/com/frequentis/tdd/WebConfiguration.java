@@ -0,0 +1,74 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd;
+
+import java.util.List;
+import javax.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+import com.frequentis.tdd.caching.ResponseCacheInterceptor;
+import com.frequentis.tdd.tenant.TenantInterceptor;
+import com.frequentis.tdd.throttling.AdmissionControlInterceptor;
+import com.frequentis.tdd.tracing.ControllerSpanInterceptor;
+import com.frequentis.tdd.tracing.TracingInterceptor;
+
+@Configuration
+public class WebConfiguration extends WebMvcConfigurerAdapter {
+    private static final String EXPORT_PATH = "/user/export/";
+
+    @Autowired
+    private TracingInterceptor tracingInterceptor;
+    @Autowired
+    private TenantInterceptor tenantInterceptor;
+    @Autowired
+    private AdmissionControlInterceptor admissionControlInterceptor;
+    @Autowired
+    private ResponseCacheInterceptor responseCacheInterceptor;
+    @Autowired
+    private ControllerSpanInterceptor controllerSpanInterceptor;
+    @Autowired
+    private Jackson2ObjectMapperBuilder objectMapperBuilder;
+
+    /**
+     * Adds an ETag computed from the response body to every GET and answers
+     * a matching If-None-Match with 304, so unchanged payloads are not resent.
+     * Export files are streamed instead of buffered for the ETag.
+     */
+    @Bean
+    public ShallowEtagHeaderFilter etagFilter() {
+        return new ShallowEtagHeaderFilter() {
+            @Override
+            protected boolean shouldNotFilter(final HttpServletRequest request) {
+                return request.getRequestURI().startsWith(request.getContextPath() + EXPORT_PATH);
+            }
+        };
+    }
+
+    /**
+     * Appended after the default converters so JSON stays the default when
+     * the client accepts any media type.
+     */
+    @Override
+    public void extendMessageConverters(final List<HttpMessageConverter<?>> converters) {
+        converters.add(new SmileHttpMessageConverter(objectMapperBuilder));
+    }
+
+    @Override
+    public void addInterceptors(final InterceptorRegistry registry) {
+        registry.addInterceptor(tracingInterceptor).addPathPatterns("/user/**");
+        registry.addInterceptor(tenantInterceptor).addPathPatterns("/user/**");
+        registry.addInterceptor(admissionControlInterceptor).addPathPatterns("/user/**");
+        registry.addInterceptor(responseCacheInterceptor).addPathPatterns("/user/**").excludePathPatterns(EXPORT_PATH + "**");
+        registry.addInterceptor(controllerSpanInterceptor).addPathPatterns("/user/**");
+    }
+}
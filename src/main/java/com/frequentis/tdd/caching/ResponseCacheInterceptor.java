@@ -0,0 +1,97 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.caching;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.io.IOException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
+
+import com.frequentis.tdd.UserRepository;
+import com.frequentis.tdd.tenant.TenantContext;
+
+/**
+ * Keeps the serialized body of successful user reads and answers repeats
+ * from it, skipping the repository and the message converters, as long as
+ * {@link UserRepository#version()} has not changed since the body was
+ * produced. Bodies are captured from the buffer of the ETag filter, which
+ * still computes the ETag and 304 for cached answers.
+ */
+@Component
+public class ResponseCacheInterceptor extends HandlerInterceptorAdapter {
+    private static final String CACHE_KEY = ResponseCacheInterceptor.class.getName() + ".key";
+    private static final String VERSION = ResponseCacheInterceptor.class.getName() + ".version";
+
+    private final UserRepository userRepository;
+    private final Cache<String, CachedResponse> responses;
+
+    @Autowired
+    public ResponseCacheInterceptor(final UserRepository userRepository,
+                                    final @Value("${com.frequentis.tdd.responseCache.maxEntries:10000}") long maxEntries) {
+        this.userRepository = userRepository;
+        this.responses = CacheBuilder.newBuilder().maximumSize(maxEntries).build();
+    }
+
+    @Override
+    public boolean preHandle(final HttpServletRequest request, final HttpServletResponse response, final Object handler) throws IOException {
+        if (!HttpMethod.GET.matches(request.getMethod())) {
+            return true;
+        }
+
+        String key = cacheKey(request);
+        long version = userRepository.version();
+        CachedResponse cached = responses.getIfPresent(key);
+        if (cached != null && cached.version == version) {
+            if (cached.contentType != null) {
+                response.setContentType(cached.contentType);
+            }
+            response.setContentLength(cached.body.length);
+            response.getOutputStream().write(cached.body);
+            return false;
+        }
+
+        // read before the handler runs, so a write committed meanwhile makes the entry stale
+        request.setAttribute(CACHE_KEY, key);
+        request.setAttribute(VERSION, version);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(final HttpServletRequest request, final HttpServletResponse response, final Object handler, final Exception ex) {
+        String key = (String) request.getAttribute(CACHE_KEY);
+        ContentCachingResponseWrapper body = WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class);
+        if (key == null || ex != null || body == null || response.getStatus() != HttpServletResponse.SC_OK) {
+            return;
+        }
+
+        responses.put(key, new CachedResponse((Long) request.getAttribute(VERSION), response.getContentType(), body.getContentAsByteArray()));
+    }
+
+    private static String cacheKey(final HttpServletRequest request) {
+        return TenantContext.current() + '\u0000' + request.getRequestURI() + '\u0000' + request.getQueryString()
+                + '\u0000' + request.getHeader("Accept");
+    }
+
+    private static final class CachedResponse {
+        private final long version;
+        private final String contentType;
+        private final byte[] body;
+
+        private CachedResponse(final long version, final String contentType, final byte[] body) {
+            this.version = version;
+            this.contentType = contentType;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.coalescing;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Merges loads of different keys issued within a short window into one call
+ * of the batch function. The caller opening a batch waits for the window and
+ * then runs the batch on its own thread; a batch reaching its maximum size is
+ * run immediately by the caller that filled it.
+ */
+public class BatchLoader<K, V> {
+    private final Function<Collection<K>, Map<K, V>> batchFunction;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private Map<K, CompletableFuture<V>> pending;
+
+    public BatchLoader(final Function<Collection<K>, Map<K, V>> batchFunction, final long windowMicros, final int maxBatchSize) {
+        this.batchFunction = batchFunction;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public V load(final K key) {
+        Map<K, CompletableFuture<V>> batch;
+        CompletableFuture<V> future;
+        boolean opened;
+        boolean full;
+        synchronized (this) {
+            opened = pending == null;
+            if (opened) {
+                pending = new LinkedHashMap<>();
+            }
+            batch = pending;
+            future = batch.computeIfAbsent(key, k -> new CompletableFuture<>());
+            full = batch.size() >= maxBatchSize;
+            if (full) {
+                pending = null;
+            }
+        }
+
+        if (full) {
+            run(batch);
+        } else if (opened) {
+            LockSupport.parkNanos(windowNanos);
+            if (close(batch)) {
+                run(batch);
+            }
+        }
+
+        return SingleFlight.join(future);
+    }
+
+    private synchronized boolean close(final Map<K, CompletableFuture<V>> batch) {
+        if (pending != batch) {
+            return false;
+        }
+        pending = null;
+        return true;
+    }
+
+    /**
+     * Completes every future of the batch whatever the batch function does,
+     * so no caller waiting in {@link #load(Object)} is left hanging.
+     */
+    private void run(final Map<K, CompletableFuture<V>> batch) {
+        Map<K, V> values = null;
+        Throwable failure = null;
+        try {
+            values = batchFunction.apply(batch.keySet());
+        } catch (Throwable e) {
+            failure = e;
+        } finally {
+            complete(batch, values, failure);
+        }
+    }
+
+    private static <K, V> void complete(final Map<K, CompletableFuture<V>> batch, final Map<K, V> values, final Throwable failure) {
+        Throwable cause = failure != null || values != null ? failure : new IllegalStateException("Batch function returned no values");
+        for (Map.Entry<K, CompletableFuture<V>> entry : batch.entrySet()) {
+            if (cause != null) {
+                entry.getValue().completeExceptionally(cause);
+            } else {
+                entry.getValue().complete(values.get(entry.getKey()));
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.export;
+
+public class ExportResult {
+    private final String id;
+    private final ExportState state;
+    private final long rows;
+    private final long durationMillis;
+
+    public ExportResult(final String id, final ExportState state, final long rows, final long durationMillis) {
+        this.id = id;
+        this.state = state;
+        this.rows = rows;
+        this.durationMillis = durationMillis;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public ExportState getState() {
+        return state;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+}
@@ -0,0 +1,12 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.export;
+
+public enum ExportState {
+    RUNNING,
+    DONE,
+    FAILED
+}
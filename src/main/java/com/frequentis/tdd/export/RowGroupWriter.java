@@ -0,0 +1,64 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.export;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Buffers one chunk of users column by column and writes it as a gzip member:
+ * the row count, all ids as longs, then the tenant, email, first name and
+ * last name columns. Each string value is a presence flag followed by modified UTF-8.
+ * Gzip members can be concatenated, so row groups of several chunks appended
+ * to one file form a valid columnar file.
+ */
+public class RowGroupWriter {
+    private final List<Long> ids = new ArrayList<>();
+    private final List<String> tenantIds = new ArrayList<>();
+    private final List<String> emails = new ArrayList<>();
+    private final List<String> firstNames = new ArrayList<>();
+    private final List<String> lastNames = new ArrayList<>();
+
+    public void add(final long id, final String tenantId, final String email, final String firstName, final String lastName) {
+        ids.add(id);
+        tenantIds.add(tenantId);
+        emails.add(email);
+        firstNames.add(firstName);
+        lastNames.add(lastName);
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    public void writeTo(final OutputStream outputStream) throws IOException {
+        GZIPOutputStream gzip = new GZIPOutputStream(outputStream);
+        DataOutputStream out = new DataOutputStream(gzip);
+        out.writeInt(ids.size());
+        for (Long id : ids) {
+            out.writeLong(id);
+        }
+        writeColumn(out, tenantIds);
+        writeColumn(out, emails);
+        writeColumn(out, firstNames);
+        writeColumn(out, lastNames);
+        out.flush();
+        gzip.finish();
+    }
+
+    private static void writeColumn(final DataOutputStream out, final List<String> values) throws IOException {
+        for (String value : values) {
+            out.writeBoolean(value != null);
+            if (value != null) {
+                out.writeUTF(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.export;
+
+import java.io.IOException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping(value = "/user")
+public class UserExportController {
+    private static final MediaType TEXT_CSV = new MediaType("text", "csv");
+
+    private final UserExporter userExporter;
+
+    @Autowired
+    public UserExportController(final UserExporter userExporter) {
+        this.userExporter = userExporter;
+    }
+
+    @RequestMapping(value = "/export", method = RequestMethod.POST)
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    @ResponseBody
+    public ExportResult export() throws IOException {
+        return userExporter.start();
+    }
+
+    @RequestMapping(value = "/export/{id}", method = RequestMethod.GET)
+    @ResponseBody
+    public ExportResult status(@PathVariable String id) {
+        return userExporter.status(id);
+    }
+
+    @RequestMapping(value = "/export/{id}/{file:.+}", method = RequestMethod.GET)
+    public ResponseEntity<Resource> download(@PathVariable String id, @PathVariable String file) {
+        MediaType contentType = UserExporter.CSV_FILE.equals(file) ? TEXT_CSV : MediaType.APPLICATION_OCTET_STREAM;
+        return ResponseEntity.ok().contentType(contentType).body(new FileSystemResource(userExporter.file(id, file).toFile()));
+    }
+}
@@ -0,0 +1,372 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.export;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.frequentis.tdd.exceptions.ExportNotFoundException;
+import com.frequentis.tdd.exceptions.ServiceOverloadedException;
+import com.frequentis.tdd.startup.SchemaInitializer;
+import com.frequentis.tdd.tenant.TenantContext;
+
+/**
+ * Exports the users of a tenant to {@code users.csv} and the columnar
+ * {@code users.ucol.gz} (see {@link RowGroupWriter}). Exports run in the
+ * background, at most {@code maxConcurrent} at a time with a bounded queue;
+ * callers poll {@link #status(String)} and fetch the files by name, never by
+ * server path. The id range is split into chunks that a fork-join pool reads
+ * in parallel straight from JDBC into per-chunk part files, which are
+ * concatenated in id order at the end. Memory use is bounded by the chunk
+ * size times the pool parallelism. Finished exports are deleted after the
+ * retention time, and exports left by an earlier run on startup.
+ */
+@Component
+@DependsOn(SchemaInitializer.BEAN_NAME)
+public class UserExporter {
+    private static final Logger LOG = LoggerFactory.getLogger(UserExporter.class);
+    private static final String MIN_ID = "SELECT MIN(id) FROM users WHERE tenant_id = ? AND deleted = FALSE";
+    private static final String MAX_ID = "SELECT MAX(id) FROM users WHERE tenant_id = ? AND deleted = FALSE";
+    private static final String CHUNK_QUERY = "SELECT id, tenant_id, email, first_name, last_name FROM users"
+            + " WHERE tenant_id = ? AND id BETWEEN ? AND ? AND deleted = FALSE ORDER BY id";
+    private static final String CSV_HEADER = "id,tenant_id,email,first_name,last_name\n";
+    private static final String CSV_PART = ".csv.part";
+    private static final String COLUMNAR_PART = ".ucol.part";
+    private static final String DIRECTORY_PREFIX = "users-";
+    private static final DateTimeFormatter DIRECTORY_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    static final String CSV_FILE = "users.csv";
+    static final String COLUMNAR_FILE = "users.ucol.gz";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Path exportPath;
+    private final int chunkSize;
+    private final long retentionMillis;
+    private final ForkJoinPool pool;
+    private final ExecutorService runner;
+    private final ConcurrentMap<String, UserExport> exports = new ConcurrentHashMap<>();
+
+    @Autowired
+    public UserExporter(final JdbcTemplate jdbcTemplate,
+                        final @Value("${com.frequentis.tdd.export.path:${java.io.tmpdir}/tdd-export}") String exportPath,
+                        final @Value("${com.frequentis.tdd.export.chunkSize:10000}") int chunkSize,
+                        final @Value("${com.frequentis.tdd.export.parallelism:0}") int parallelism,
+                        final @Value("${com.frequentis.tdd.export.maxConcurrent:1}") int maxConcurrent,
+                        final @Value("${com.frequentis.tdd.export.maxQueued:4}") int maxQueued,
+                        final @Value("${com.frequentis.tdd.export.retentionMillis:3600000}") long retentionMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.exportPath = Paths.get(exportPath);
+        this.chunkSize = chunkSize;
+        this.retentionMillis = retentionMillis;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.runner = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(maxQueued));
+    }
+
+    /**
+     * Their status is lost with the previous process, so nobody can fetch them.
+     */
+    @PostConstruct
+    public void deleteExportsOfEarlierRuns() throws IOException {
+        if (!Files.isDirectory(exportPath)) {
+            return;
+        }
+        try (DirectoryStream<Path> directories = Files.newDirectoryStream(exportPath, DIRECTORY_PREFIX + "*")) {
+            for (Path directory : directories) {
+                deleteDirectory(directory);
+            }
+        }
+    }
+
+    /**
+     * Starts exporting the users of the current tenant.
+     *
+     * @throws ServiceOverloadedException if too many exports are running or queued
+     */
+    public ExportResult start() throws IOException {
+        Files.createDirectories(exportPath);
+        // the random suffix keeps exports started within the same second apart
+        Path directory = Files.createTempDirectory(exportPath, DIRECTORY_PREFIX + LocalDateTime.now().format(DIRECTORY_FORMAT) + "-");
+        UserExport export = new UserExport(directory.getFileName().toString(), TenantContext.current(), directory);
+        exports.put(export.id, export);
+        try {
+            runner.execute(() -> run(export));
+        } catch (RejectedExecutionException e) {
+            exports.remove(export.id);
+            deleteDirectory(directory);
+            throw new ServiceOverloadedException();
+        }
+        return export.result();
+    }
+
+    public ExportResult status(final String id) {
+        return find(id).result();
+    }
+
+    /**
+     * @return the file of a finished export of the current tenant
+     */
+    public Path file(final String id, final String name) {
+        UserExport export = find(id);
+        if (export.state != ExportState.DONE || !(CSV_FILE.equals(name) || COLUMNAR_FILE.equals(name))) {
+            throw new ExportNotFoundException();
+        }
+        return export.directory.resolve(name);
+    }
+
+    @Scheduled(fixedDelayString = "${com.frequentis.tdd.export.cleanupIntervalMillis:60000}")
+    public void deleteExpiredExports() {
+        long now = System.currentTimeMillis();
+        for (UserExport export : exports.values()) {
+            if (export.state != ExportState.RUNNING && now - export.finishedMillis > retentionMillis && exports.remove(export.id, export)) {
+                deleteDirectoryQuietly(export.directory);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        runner.shutdownNow();
+        pool.shutdownNow();
+    }
+
+    private UserExport find(final String id) {
+        UserExport export = exports.get(id);
+        if (export == null || !export.tenant.equals(TenantContext.current())) {
+            throw new ExportNotFoundException();
+        }
+        return export;
+    }
+
+    private void run(final UserExport export) {
+        long start = System.currentTimeMillis();
+        try {
+            long rows = write(export.tenant, export.directory);
+            export.finish(ExportState.DONE, rows, System.currentTimeMillis() - start);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Export {} failed", export.id, e);
+            deleteDirectoryQuietly(export.directory);
+            export.finish(ExportState.FAILED, 0, System.currentTimeMillis() - start);
+        }
+    }
+
+    private long write(final String tenant, final Path directory) throws IOException {
+        AtomicLong rows = new AtomicLong();
+        try {
+            Long minId = jdbcTemplate.queryForObject(MIN_ID, Long.class, tenant);
+            Long maxId = jdbcTemplate.queryForObject(MAX_ID, Long.class, tenant);
+            if (minId != null) {
+                try {
+                    pool.invoke(new ExportTask(tenant, directory, minId, maxId, rows));
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            }
+
+            try (OutputStream csv = Files.newOutputStream(directory.resolve(CSV_FILE))) {
+                csv.write(CSV_HEADER.getBytes(StandardCharsets.UTF_8));
+            }
+            concatenateParts(directory, CSV_PART, directory.resolve(CSV_FILE));
+            concatenateParts(directory, COLUMNAR_PART, directory.resolve(COLUMNAR_FILE));
+        } finally {
+            deleteParts(directory);
+        }
+        return rows.get();
+    }
+
+    private void exportChunk(final String tenant, final Path directory, final long fromId, final long toId, final AtomicLong rows)
+            throws IOException {
+        String partName = String.format("part-%019d", fromId);
+        RowGroupWriter rowGroup = new RowGroupWriter();
+        try (Writer csv = Files.newBufferedWriter(directory.resolve(partName + CSV_PART), StandardCharsets.UTF_8)) {
+            jdbcTemplate.query(CHUNK_QUERY, resultSet -> {
+                long id = resultSet.getLong(1);
+                String tenantId = resultSet.getString(2);
+                String email = resultSet.getString(3);
+                String firstName = resultSet.getString(4);
+                String lastName = resultSet.getString(5);
+                rowGroup.add(id, tenantId, email, firstName, lastName);
+                writeCsvRow(csv, id, tenantId, email, firstName, lastName);
+            }, tenant, fromId, toId);
+        }
+
+        if (rowGroup.size() > 0) {
+            try (OutputStream columnar = Files.newOutputStream(directory.resolve(partName + COLUMNAR_PART))) {
+                rowGroup.writeTo(columnar);
+            }
+        }
+        rows.addAndGet(rowGroup.size());
+    }
+
+    private static void writeCsvRow(final Writer csv, final long id, final String... values) {
+        try {
+            csv.write(Long.toString(id));
+            for (String value : values) {
+                csv.write(',');
+                csv.write(escapeCsv(value));
+            }
+            csv.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static String escapeCsv(final String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static void concatenateParts(final Path directory, final String suffix, final Path target) throws IOException {
+        List<Path> parts = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + suffix)) {
+            stream.forEach(parts::add);
+        }
+        Collections.sort(parts);
+
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            for (Path part : parts) {
+                try (FileChannel in = FileChannel.open(part, StandardOpenOption.READ)) {
+                    long position = 0;
+                    long size = in.size();
+                    while (position < size) {
+                        position += in.transferTo(position, size - position, out);
+                    }
+                }
+                Files.delete(part);
+            }
+        }
+    }
+
+    /**
+     * Removes the part files a failed export left behind; after a successful
+     * one there are none.
+     */
+    private static void deleteParts(final Path directory) throws IOException {
+        try (DirectoryStream<Path> parts = Files.newDirectoryStream(directory, "*.part")) {
+            for (Path part : parts) {
+                Files.deleteIfExists(part);
+            }
+        }
+    }
+
+    private static void deleteDirectory(final Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private static void deleteDirectoryQuietly(final Path directory) {
+        try {
+            deleteDirectory(directory);
+        } catch (IOException | UncheckedIOException e) {
+            LOG.warn("Could not delete export directory {}", directory, e);
+        }
+    }
+
+    private final class ExportTask extends RecursiveAction {
+        private final String tenant;
+        private final Path directory;
+        private final long fromId;
+        private final long toId;
+        private final AtomicLong rows;
+
+        private ExportTask(final String tenant, final Path directory, final long fromId, final long toId, final AtomicLong rows) {
+            this.tenant = tenant;
+            this.directory = directory;
+            this.fromId = fromId;
+            this.toId = toId;
+            this.rows = rows;
+        }
+
+        @Override
+        protected void compute() {
+            if (toId - fromId < chunkSize) {
+                try {
+                    exportChunk(tenant, directory, fromId, toId, rows);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return;
+            }
+
+            long middle = fromId + (toId - fromId) / 2;
+            invokeAll(new ExportTask(tenant, directory, fromId, middle, rows),
+                      new ExportTask(tenant, directory, middle + 1, toId, rows));
+        }
+    }
+
+    private static final class UserExport {
+        private final String id;
+        private final String tenant;
+        private final Path directory;
+        private volatile ExportState state = ExportState.RUNNING;
+        private volatile long rows;
+        private volatile long durationMillis;
+        private volatile long finishedMillis;
+
+        private UserExport(final String id, final String tenant, final Path directory) {
+            this.id = id;
+            this.tenant = tenant;
+            this.directory = directory;
+        }
+
+        private void finish(final ExportState finalState, final long exportedRows, final long duration) {
+            rows = exportedRows;
+            durationMillis = duration;
+            finishedMillis = System.currentTimeMillis();
+            state = finalState;
+        }
+
+        private ExportResult result() {
+            ExportState current = state;
+            return new ExportResult(id, current, rows, durationMillis);
+        }
+    }
+}
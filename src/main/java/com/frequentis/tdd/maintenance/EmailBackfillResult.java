@@ -0,0 +1,34 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.maintenance;
+
+public class EmailBackfillResult {
+    private final long updated;
+    private final long conflicts;
+    private final long durationMillis;
+
+    public EmailBackfillResult(final long updated, final long conflicts, final long durationMillis) {
+        this.updated = updated;
+        this.conflicts = conflicts;
+        this.durationMillis = durationMillis;
+    }
+
+    public long getUpdated() {
+        return updated;
+    }
+
+    /**
+     * @return rows left unnormalized because another live user of the same
+     *         tenant already has the normalized address
+     */
+    public long getConflicts() {
+        return conflicts;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.maintenance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.frequentis.tdd.Emails;
+import com.frequentis.tdd.startup.SchemaInitializer;
+
+/**
+ * One-off fill of {@code email_normalized} for rows written before the column
+ * was maintained on save. The id range is split into batches that run in
+ * parallel, each in its own short transaction, so only the rows of one batch
+ * are locked at a time and concurrent requests keep working. Enabled with
+ * {@code com.frequentis.tdd.backfill.normalizedEmail=true}; it starts once the
+ * application is ready and can be rerun safely. Until a row is filled, lookups
+ * and the unique index fall back to its raw email, see {@code schema.sql}.
+ */
+@Component
+@DependsOn(SchemaInitializer.BEAN_NAME)
+@ConditionalOnProperty("com.frequentis.tdd.backfill.normalizedEmail")
+public class EmailNormalizationBackfill implements ApplicationListener<ApplicationReadyEvent> {
+    private static final Logger LOG = LoggerFactory.getLogger(EmailNormalizationBackfill.class);
+    private static final String MIN_ID = "SELECT MIN(id) FROM users WHERE email_normalized IS NULL AND email IS NOT NULL";
+    private static final String MAX_ID = "SELECT MAX(id) FROM users WHERE email_normalized IS NULL AND email IS NOT NULL";
+    private static final String BATCH_QUERY =
+            "SELECT id, email FROM users WHERE id BETWEEN ? AND ? AND email_normalized IS NULL AND email IS NOT NULL";
+    private static final String UPDATE = "UPDATE users SET email_normalized = ? WHERE id = ? AND email_normalized IS NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int parallelism;
+
+    @Autowired
+    public EmailNormalizationBackfill(final JdbcTemplate jdbcTemplate,
+                                      final PlatformTransactionManager transactionManager,
+                                      final @Value("${com.frequentis.tdd.backfill.batchSize:1000}") int batchSize,
+                                      final @Value("${com.frequentis.tdd.backfill.parallelism:4}") int parallelism) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+    }
+
+    @Override
+    public void onApplicationEvent(final ApplicationReadyEvent event) {
+        Thread thread = new Thread(() -> {
+            try {
+                EmailBackfillResult result = run();
+                LOG.info("Normalized {} emails in {} ms, {} conflicts left unnormalized",
+                         result.getUpdated(), result.getDurationMillis(), result.getConflicts());
+            } catch (RuntimeException e) {
+                LOG.error("Email backfill failed", e);
+            }
+        }, "email-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public EmailBackfillResult run() {
+        long start = System.currentTimeMillis();
+        AtomicLong updated = new AtomicLong();
+        AtomicLong conflicts = new AtomicLong();
+        Long minId = jdbcTemplate.queryForObject(MIN_ID, Long.class);
+        Long maxId = jdbcTemplate.queryForObject(MAX_ID, Long.class);
+        if (minId != null) {
+            List<Callable<Void>> batches = new ArrayList<>();
+            for (long fromId = minId; fromId <= maxId; fromId += batchSize) {
+                long batchFromId = fromId;
+                long batchToId = Math.min(fromId + batchSize - 1, maxId);
+                batches.add(() -> {
+                    backfillBatch(batchFromId, batchToId, updated, conflicts);
+                    return null;
+                });
+            }
+            invokeAll(batches);
+        }
+        return new EmailBackfillResult(updated.get(), conflicts.get(), System.currentTimeMillis() - start);
+    }
+
+    private void backfillBatch(final long fromId, final long toId, final AtomicLong updated, final AtomicLong conflicts) {
+        List<Object[]> rows = jdbcTemplate.query(BATCH_QUERY,
+                                                 (resultSet, rowNumber) -> new Object[] {Emails.normalize(resultSet.getString(2)), resultSet.getLong(1)},
+                                                 fromId, toId);
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        try {
+            int[] counts = transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(UPDATE, rows));
+            updated.addAndGet(sum(counts));
+        } catch (DataIntegrityViolationException e) {
+            backfillRows(rows, updated, conflicts);
+        }
+    }
+
+    /**
+     * Falls back to one row at a time after a batch hit the unique index, so
+     * only the clashing rows are skipped.
+     */
+    private void backfillRows(final List<Object[]> rows, final AtomicLong updated, final AtomicLong conflicts) {
+        for (Object[] row : rows) {
+            try {
+                updated.addAndGet(jdbcTemplate.update(UPDATE, row));
+            } catch (DataIntegrityViolationException e) {
+                conflicts.incrementAndGet();
+                LOG.warn("User {} clashes with another user on normalized email {}", row[1], row[0]);
+            }
+        }
+    }
+
+    private void invokeAll(final List<Callable<Void>> batches) {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            for (Future<Void> batch : executor.invokeAll(batches)) {
+                batch.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Email backfill failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static long sum(final int[] counts) {
+        long sum = 0;
+        for (int count : counts) {
+            sum += count;
+        }
+        return sum;
+    }
+}
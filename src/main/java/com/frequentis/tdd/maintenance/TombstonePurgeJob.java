@@ -0,0 +1,65 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.maintenance;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.frequentis.tdd.UserRepository;
+import com.frequentis.tdd.throttling.AdmissionControlInterceptor;
+
+/**
+ * Physically removes soft-deleted users in bounded batches. A run stops as
+ * soon as the API gets busy, so index maintenance does not compete with
+ * request traffic.
+ */
+@Component
+public class TombstonePurgeJob {
+    private static final Logger LOG = LoggerFactory.getLogger(TombstonePurgeJob.class);
+
+    private final UserRepository userRepository;
+    private final AdmissionControlInterceptor admissionControl;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final int maxInFlightRequests;
+
+    @Autowired
+    public TombstonePurgeJob(final UserRepository userRepository,
+                             final AdmissionControlInterceptor admissionControl,
+                             final @Value("${com.frequentis.tdd.purge.batchSize:500}") int batchSize,
+                             final @Value("${com.frequentis.tdd.purge.maxBatchesPerRun:20}") int maxBatchesPerRun,
+                             final @Value("${com.frequentis.tdd.purge.maxInFlightRequests:4}") int maxInFlightRequests) {
+        this.userRepository = userRepository;
+        this.admissionControl = admissionControl;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.maxInFlightRequests = maxInFlightRequests;
+    }
+
+    @Scheduled(fixedDelayString = "${com.frequentis.tdd.purge.intervalMillis:60000}")
+    public void purge() {
+        int purged = 0;
+        for (int batch = 0; batch < maxBatchesPerRun && isLowLoad(); batch++) {
+            int removed = userRepository.purgeTombstones(batchSize);
+            purged += removed;
+            if (removed < batchSize) {
+                break;
+            }
+        }
+
+        if (purged > 0) {
+            LOG.info("Purged {} deleted users", purged);
+        }
+    }
+
+    private boolean isLowLoad() {
+        return admissionControl.inFlightRequests() <= maxInFlightRequests;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.readmodel;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from {@code long} keys to non-negative {@code int}
+ * indexes, without boxing. Mutable; a {@link UserSnapshot} only mutates
+ * copies it has not published yet.
+ */
+final class LongIndexMap {
+    static final int MISSING = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    LongIndexMap() {
+        this(INITIAL_CAPACITY);
+    }
+
+    private LongIndexMap(final int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, MISSING);
+    }
+
+    private LongIndexMap(final LongIndexMap other) {
+        keys = other.keys.clone();
+        values = other.values.clone();
+        size = other.size;
+    }
+
+    LongIndexMap copy() {
+        return new LongIndexMap(this);
+    }
+
+    static long hash(final long key) {
+        return key * 0x9E3779B97F4A7C15L;
+    }
+
+    int get(final long key) {
+        int mask = keys.length - 1;
+        for (int slot = (int) hash(key) & mask; values[slot] != MISSING; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+        return MISSING;
+    }
+
+    void put(final long key, final int value) {
+        if ((size + 1) * 4 > keys.length * 3) {
+            resize(keys.length * 2);
+        }
+
+        int mask = keys.length - 1;
+        int slot = (int) hash(key) & mask;
+        while (values[slot] != MISSING && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (values[slot] == MISSING) {
+            size++;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+    }
+
+    /**
+     * Shifts the following entries of the probe sequence back instead of
+     * leaving a tombstone, so lookups never scan removed slots.
+     */
+    void remove(final long key) {
+        int mask = keys.length - 1;
+        int hole = (int) hash(key) & mask;
+        while (values[hole] != MISSING && keys[hole] != key) {
+            hole = (hole + 1) & mask;
+        }
+        if (values[hole] == MISSING) {
+            return;
+        }
+
+        for (int slot = (hole + 1) & mask; values[slot] != MISSING; slot = (slot + 1) & mask) {
+            int home = (int) hash(keys[slot]) & mask;
+            if (hole <= slot ? (home <= hole || home > slot) : (home <= hole && home > slot)) {
+                keys[hole] = keys[slot];
+                values[hole] = values[slot];
+                hole = slot;
+            }
+        }
+        values[hole] = MISSING;
+        size--;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void resize(final int capacity) {
+        LongIndexMap resized = new LongIndexMap(capacity);
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (values[slot] != MISSING) {
+                resized.put(keys[slot], values[slot]);
+            }
+        }
+        keys = resized.keys;
+        values = resized.values;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.readmodel;
+
+/**
+ * Open-addressing map from strings to non-negative {@code int} indexes, the
+ * counterpart of {@link LongIndexMap} for normalized email addresses.
+ */
+final class StringIndexMap {
+    static final int MISSING = LongIndexMap.MISSING;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private String[] keys;
+    private int[] values;
+    private int size;
+
+    StringIndexMap() {
+        this(INITIAL_CAPACITY);
+    }
+
+    private StringIndexMap(final int capacity) {
+        keys = new String[capacity];
+        values = new int[capacity];
+    }
+
+    private StringIndexMap(final StringIndexMap other) {
+        keys = other.keys.clone();
+        values = other.values.clone();
+        size = other.size;
+    }
+
+    StringIndexMap copy() {
+        return new StringIndexMap(this);
+    }
+
+    static int hash(final String key) {
+        return key.hashCode() * 0x9E3779B9;
+    }
+
+    int get(final String key) {
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot].equals(key)) {
+                return values[slot];
+            }
+        }
+        return MISSING;
+    }
+
+    void put(final String key, final int value) {
+        if ((size + 1) * 4 > keys.length * 3) {
+            resize(keys.length * 2);
+        }
+
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != null && !keys[slot].equals(key)) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == null) {
+            size++;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+    }
+
+    /**
+     * @see LongIndexMap#remove(long)
+     */
+    void remove(final String key) {
+        int mask = keys.length - 1;
+        int hole = hash(key) & mask;
+        while (keys[hole] != null && !keys[hole].equals(key)) {
+            hole = (hole + 1) & mask;
+        }
+        if (keys[hole] == null) {
+            return;
+        }
+
+        for (int slot = (hole + 1) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+            int home = hash(keys[slot]) & mask;
+            if (hole <= slot ? (home <= hole || home > slot) : (home <= hole && home > slot)) {
+                keys[hole] = keys[slot];
+                values[hole] = values[slot];
+                hole = slot;
+            }
+        }
+        keys[hole] = null;
+        size--;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void resize(final int capacity) {
+        StringIndexMap resized = new StringIndexMap(capacity);
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != null) {
+                resized.put(keys[slot], values[slot]);
+            }
+        }
+        keys = resized.keys;
+        values = resized.values;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.readmodel;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.frequentis.tdd.User;
+import com.frequentis.tdd.UserCrudRepository;
+import com.frequentis.tdd.exceptions.TenantAccessDeniedException;
+import com.frequentis.tdd.tenant.TenantRegistry;
+
+/**
+ * Serves user reads from an in-memory {@link UserSnapshot} per tenant. A
+ * tenant is loaded on first access; reads only dereference the current
+ * snapshot and never lock. After a write, {@link #refresh(String, Collection)}
+ * rereads the affected rows and publishes a new snapshot that shares all
+ * unaffected parts with the previous one.
+ * <p>
+ * Snapshots hold detached copies, never entities of a persistence context,
+ * and readers get copies of those, so no caller can change a published
+ * snapshot. Only tenants of the {@link TenantRegistry} are kept.
+ */
+public class UserReadModel {
+    private final UserCrudRepository userCrudRepository;
+    private final TenantRegistry tenantRegistry;
+    private final ConcurrentMap<String, TenantUsers> tenants = new ConcurrentHashMap<>();
+
+    public UserReadModel(final UserCrudRepository userCrudRepository, final TenantRegistry tenantRegistry) {
+        this.userCrudRepository = userCrudRepository;
+        this.tenantRegistry = tenantRegistry;
+    }
+
+    public User findOne(final String tenant, final Long id) {
+        User user = tenant(tenant).snapshot.findOne(id);
+        return user != null ? new User(user) : null;
+    }
+
+    public Optional<User> findByEmail(final String tenant, final String normalizedEmail) {
+        return Optional.ofNullable(tenant(tenant).snapshot.findByEmail(normalizedEmail)).map(User::new);
+    }
+
+    /**
+     * Taking the snapshot is a single read; the users are then copied, since
+     * {@link User} is a mutable entity and callers must not change the
+     * published snapshot. Serializing the result is linear anyway.
+     *
+     * @return copies of the users of the current snapshot; later writes do not change them
+     */
+    public List<User> findAll(final String tenant) {
+        return detach(tenant(tenant).snapshot.all());
+    }
+
+    /**
+     * Publishes the committed state of the given users. Rereading under the
+     * tenant's lock rather than applying the caller's copy keeps concurrent
+     * writes to the same user from publishing out of order. If that fails,
+     * the tenant is dropped and loaded afresh on its next read.
+     */
+    public void refresh(final String tenant, final Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        TenantUsers users = tenant(tenant);
+        synchronized (users) {
+            try {
+                Map<Long, User> current = new HashMap<>();
+                for (User user : userCrudRepository.findByTenantIdAndIdIn(tenant, ids)) {
+                    current.put(user.getId(), new User(user));
+                }
+
+                UserSnapshot.Editor editor = users.snapshot.edit();
+                for (Long id : ids) {
+                    User user = current.get(id);
+                    if (user != null) {
+                        editor.put(user);
+                    } else {
+                        editor.remove(id);
+                    }
+                }
+                users.snapshot = editor.publish();
+            } catch (RuntimeException | Error e) {
+                tenants.remove(tenant, users);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Writers wait here while the tenant loads, so no write can slip in
+     * between the initial load and its publication.
+     */
+    private TenantUsers tenant(final String tenant) {
+        TenantUsers users = tenants.get(tenant);
+        if (users != null) {
+            return users;
+        }
+        if (!tenantRegistry.isKnown(tenant)) {
+            throw new TenantAccessDeniedException();
+        }
+        return tenants.computeIfAbsent(tenant, t -> new TenantUsers(UserSnapshot.of(detach(userCrudRepository.findByTenantId(t)))));
+    }
+
+    private static List<User> detach(final Collection<User> users) {
+        List<User> copies = new ArrayList<>(users.size());
+        for (User user : users) {
+            copies.add(new User(user));
+        }
+        return copies;
+    }
+
+    private static final class TenantUsers {
+        private volatile UserSnapshot snapshot;
+
+        private TenantUsers(final UserSnapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+    }
+}
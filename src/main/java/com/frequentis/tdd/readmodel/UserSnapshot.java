@@ -0,0 +1,231 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.readmodel;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.RandomAccess;
+
+import com.frequentis.tdd.User;
+
+/**
+ * Immutable view of the users of one tenant. Users are kept densely in
+ * fixed-size chunks, with id and normalized email mapping to their position.
+ * Both maps are split into segments, so an {@link Editor} copies only the
+ * chunks and segments it touches and shares everything else with the
+ * snapshot it started from.
+ */
+final class UserSnapshot {
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int SEGMENT_BITS = 6;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+
+    static final UserSnapshot EMPTY = new UserSnapshot(new User[0][], 0, emptyIdSegments(), emptyEmailSegments());
+
+    private final User[][] chunks;
+    private final int size;
+    private final LongIndexMap[] idSegments;
+    private final StringIndexMap[] emailSegments;
+    private final List<User> all = new AllUsers();
+
+    private UserSnapshot(final User[][] chunks, final int size, final LongIndexMap[] idSegments, final StringIndexMap[] emailSegments) {
+        this.chunks = chunks;
+        this.size = size;
+        this.idSegments = idSegments;
+        this.emailSegments = emailSegments;
+    }
+
+    static UserSnapshot of(final Iterable<User> users) {
+        Editor editor = EMPTY.edit();
+        for (User user : users) {
+            editor.put(user);
+        }
+        return editor.publish();
+    }
+
+    User findOne(final long id) {
+        int index = idSegments[idSegment(id)].get(id);
+        return index == LongIndexMap.MISSING ? null : get(index);
+    }
+
+    User findByEmail(final String normalizedEmail) {
+        int index = emailSegments[emailSegment(normalizedEmail)].get(normalizedEmail);
+        return index == StringIndexMap.MISSING ? null : get(index);
+    }
+
+    /**
+     * @return an unmodifiable view of all users, in no particular order
+     */
+    List<User> all() {
+        return all;
+    }
+
+    int size() {
+        return size;
+    }
+
+    Editor edit() {
+        return new Editor();
+    }
+
+    private User get(final int index) {
+        return chunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+    }
+
+    private static int idSegment(final long id) {
+        return (int) (LongIndexMap.hash(id) >>> (Long.SIZE - SEGMENT_BITS));
+    }
+
+    private static int emailSegment(final String normalizedEmail) {
+        return StringIndexMap.hash(normalizedEmail) >>> (Integer.SIZE - SEGMENT_BITS);
+    }
+
+    private static LongIndexMap[] emptyIdSegments() {
+        LongIndexMap[] segments = new LongIndexMap[SEGMENTS];
+        Arrays.fill(segments, new LongIndexMap());
+        return segments;
+    }
+
+    private static StringIndexMap[] emptyEmailSegments() {
+        StringIndexMap[] segments = new StringIndexMap[SEGMENTS];
+        Arrays.fill(segments, new StringIndexMap());
+        return segments;
+    }
+
+    private final class AllUsers extends AbstractList<User> implements RandomAccess {
+        @Override
+        public User get(final int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+            }
+            return UserSnapshot.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Collects changes to a snapshot, copying each chunk and segment on its
+     * first write. Not thread-safe and not usable after {@link #publish()}.
+     */
+    final class Editor {
+        private User[][] chunks = UserSnapshot.this.chunks.clone();
+        private int size = UserSnapshot.this.size;
+        private final LongIndexMap[] idSegments = UserSnapshot.this.idSegments.clone();
+        private final StringIndexMap[] emailSegments = UserSnapshot.this.emailSegments.clone();
+        private final BitSet copiedChunks = new BitSet();
+        private final BitSet copiedIdSegments = new BitSet(SEGMENTS);
+        private final BitSet copiedEmailSegments = new BitSet(SEGMENTS);
+
+        private Editor() {
+        }
+
+        /**
+         * Adds the user, or replaces the user with the same id.
+         */
+        void put(final User user) {
+            long id = user.getId();
+            int index = idSegments[idSegment(id)].get(id);
+            if (index == LongIndexMap.MISSING) {
+                index = size++;
+                writableIds(id).put(id, index);
+            } else {
+                removeEmail(get(index), index);
+            }
+            set(index, user);
+            putEmail(user, index);
+        }
+
+        /**
+         * Removes the user with the given id, moving the last user into its
+         * place to keep the chunks dense.
+         */
+        void remove(final long id) {
+            int index = idSegments[idSegment(id)].get(id);
+            if (index == LongIndexMap.MISSING) {
+                return;
+            }
+
+            removeEmail(get(index), index);
+            writableIds(id).remove(id);
+            int last = --size;
+            if (index != last) {
+                User moved = get(last);
+                removeEmail(moved, last);
+                set(index, moved);
+                writableIds(moved.getId()).put(moved.getId(), index);
+                putEmail(moved, index);
+            }
+            set(last, null);
+        }
+
+        UserSnapshot publish() {
+            int usedChunks = (size + CHUNK_MASK) >>> CHUNK_BITS;
+            return new UserSnapshot(usedChunks < chunks.length ? Arrays.copyOf(chunks, usedChunks) : chunks,
+                                    size, idSegments, emailSegments);
+        }
+
+        private User get(final int index) {
+            return chunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+        }
+
+        private void set(final int index, final User user) {
+            int chunk = index >>> CHUNK_BITS;
+            if (chunk >= chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunk + 1);
+                chunks[chunk] = new User[CHUNK_SIZE];
+                copiedChunks.set(chunk);
+            } else if (!copiedChunks.get(chunk)) {
+                chunks[chunk] = chunks[chunk].clone();
+                copiedChunks.set(chunk);
+            }
+            chunks[chunk][index & CHUNK_MASK] = user;
+        }
+
+        private void putEmail(final User user, final int index) {
+            String email = user.getNormalizedEmail();
+            if (email != null) {
+                writableEmails(email).put(email, index);
+            }
+        }
+
+        /**
+         * Only removes the entry if it still points at the given position,
+         * another user may have taken over the address in this edit.
+         */
+        private void removeEmail(final User user, final int index) {
+            String email = user.getNormalizedEmail();
+            if (email != null && emailSegments[emailSegment(email)].get(email) == index) {
+                writableEmails(email).remove(email);
+            }
+        }
+
+        private LongIndexMap writableIds(final long id) {
+            int segment = idSegment(id);
+            if (!copiedIdSegments.get(segment)) {
+                idSegments[segment] = idSegments[segment].copy();
+                copiedIdSegments.set(segment);
+            }
+            return idSegments[segment];
+        }
+
+        private StringIndexMap writableEmails(final String email) {
+            int segment = emailSegment(email);
+            if (!copiedEmailSegments.get(segment)) {
+                emailSegments[segment] = emailSegments[segment].copy();
+                copiedEmailSegments.set(segment);
+            }
+            return emailSegments[segment];
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.startup;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs {@code schema.sql}, whose statements only change a database that is
+ * missing the table or an older migration, so startup stays cheap once the
+ * schema is current. Used instead of {@code spring.datasource.initialize} in the
+ * {@code fast-startup} profile, enabled with
+ * {@code com.frequentis.tdd.schema.initializeIfMissing}.
+ * <p>
+ * The bean always exists, so beans that query {@code users} while starting
+ * can declare {@code @DependsOn(SchemaInitializer.BEAN_NAME)} whether the
+ * initializer is enabled or not.
+ */
+@Component(SchemaInitializer.BEAN_NAME)
+public class SchemaInitializer {
+    public static final String BEAN_NAME = "schemaInitializer";
+
+    private static final Logger LOG = LoggerFactory.getLogger(SchemaInitializer.class);
+
+    private final DataSource dataSource;
+    private final boolean enabled;
+
+    @Autowired
+    public SchemaInitializer(final DataSource dataSource,
+                             final @Value("${com.frequentis.tdd.schema.initializeIfMissing:false}") boolean enabled) {
+        this.dataSource = dataSource;
+        this.enabled = enabled;
+    }
+
+    @PostConstruct
+    public void initialize() {
+        if (!enabled) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        DatabasePopulatorUtils.execute(new ResourceDatabasePopulator(new ClassPathResource("schema.sql")), dataSource);
+        LOG.info("Applied schema.sql in {} ms", System.currentTimeMillis() - start);
+    }
+}
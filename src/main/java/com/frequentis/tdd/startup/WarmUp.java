@@ -0,0 +1,103 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.startup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import org.apache.commons.validator.routines.EmailValidator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import com.frequentis.tdd.User;
+import com.frequentis.tdd.UserController;
+import com.frequentis.tdd.UserRepository;
+import com.frequentis.tdd.tenant.TenantContext;
+import com.frequentis.tdd.tenant.TenantRegistry;
+
+/**
+ * Exercises the user read paths of every tenant, the email validator and the
+ * JSON mapping once the context is up, so the first real requests do not pay for class loading,
+ * JIT and connection pool setup. Reports {@code OUT_OF_SERVICE} on
+ * {@code /health} until it has finished. Enabled with
+ * {@code com.frequentis.tdd.warmUp.enabled}, as in the {@code fast-startup} profile.
+ */
+@Component
+@DependsOn(SchemaInitializer.BEAN_NAME)
+@ConditionalOnProperty("com.frequentis.tdd.warmUp.enabled")
+public class WarmUp extends AbstractHealthIndicator implements ApplicationListener<ApplicationReadyEvent> {
+    private static final Logger LOG = LoggerFactory.getLogger(WarmUp.class);
+    private static final Long MISSING_ID = -1L;
+
+    private final UserController userController;
+    private final UserRepository userRepository;
+    private final ObjectMapper objectMapper;
+    private final TenantRegistry tenantRegistry;
+    private final int iterations;
+    private volatile boolean finished;
+
+    @Autowired
+    public WarmUp(final UserController userController,
+                  final UserRepository userRepository,
+                  final ObjectMapper objectMapper,
+                  final TenantRegistry tenantRegistry,
+                  final @Value("${com.frequentis.tdd.warmUp.iterations:50}") int iterations) {
+        this.userController = userController;
+        this.userRepository = userRepository;
+        this.objectMapper = objectMapper;
+        this.tenantRegistry = tenantRegistry;
+        this.iterations = iterations;
+    }
+
+    @Override
+    public void onApplicationEvent(final ApplicationReadyEvent event) {
+        long start = System.currentTimeMillis();
+        User sample = new User(MISSING_ID, "warm", "up", "warm.up@example.com");
+        for (String tenant : tenantRegistry.tenants()) {
+            TenantContext.set(tenant);
+            try {
+                for (int i = 0; i < iterations; i++) {
+                    userController.get(MISSING_ID);
+                    userRepository.findByEmail(sample.getEmail());
+                }
+            } finally {
+                TenantContext.clear();
+            }
+        }
+        for (int i = 0; i < iterations; i++) {
+            EmailValidator.getInstance().isValid(sample.getEmail());
+            roundTrip(sample);
+        }
+        finished = true;
+        LOG.info("Warm-up finished in {} ms", System.currentTimeMillis() - start);
+    }
+
+    @Override
+    protected void doHealthCheck(final Health.Builder builder) {
+        if (finished) {
+            builder.up();
+        } else {
+            builder.outOfService().withDetail("warmUp", "running");
+        }
+    }
+
+    private void roundTrip(final User user) {
+        try {
+            objectMapper.readValue(objectMapper.writeValueAsBytes(user), User.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -6,9 +6,22 @@
 package com.frequentis.tdd.storage;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
 
 public interface FileStorage {
     boolean exists();
 
     void store(String name, byte[] bytes) throws IOException;
+
+    Optional<byte[]> get(String name) throws IOException;
+
+    /**
+     * @return whether a file with the given name existed
+     */
+    boolean delete(String name) throws IOException;
+
+    List<StoredFile> list() throws IOException;
+
+    Optional<StoredFile> metadata(String name) throws IOException;
 }
@@ -6,13 +6,26 @@
 package com.frequentis.tdd.storage;
 
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
+import com.frequentis.tdd.exceptions.InvalidFileNameException;
+
 @Component
+@Lazy
+@ConditionalOnProperty(name = "com.frequentis.tdd.storage.type", havingValue = "filesystem", matchIfMissing = true)
 public class FileSystemStorage implements FileStorage{
     private final String filePath;
 
@@ -28,6 +41,59 @@ public class FileSystemStorage implements FileStorage{
 
     @Override
     public void store(final String name, final byte[] bytes) throws IOException {
-        Files.write(Paths.get(filePath, name), bytes);
+        Files.write(resolve(name), bytes);
+    }
+
+    @Override
+    public Optional<byte[]> get(final String name) throws IOException {
+        Path path = resolve(name);
+        return Files.exists(path) ? Optional.of(Files.readAllBytes(path)) : Optional.empty();
+    }
+
+    @Override
+    public boolean delete(final String name) throws IOException {
+        return Files.deleteIfExists(resolve(name));
+    }
+
+    @Override
+    public List<StoredFile> list() throws IOException {
+        List<StoredFile> files = new ArrayList<>();
+        try (DirectoryStream<Path> directory = Files.newDirectoryStream(Paths.get(filePath))) {
+            for (Path path : directory) {
+                files.add(toStoredFile(path, Files.readAttributes(path, BasicFileAttributes.class)));
+            }
+        }
+        return files;
+    }
+
+    @Override
+    public Optional<StoredFile> metadata(final String name) throws IOException {
+        Path path = resolve(name);
+        if (!Files.exists(path)) {
+            return Optional.empty();
+        }
+        return Optional.of(toStoredFile(path, Files.readAttributes(path, BasicFileAttributes.class)));
+    }
+
+    /**
+     * Rejects names that would resolve outside the storage directory, such as
+     * {@code ../x} or absolute paths.
+     */
+    private Path resolve(final String name) {
+        Path root = Paths.get(filePath).toAbsolutePath().normalize();
+        Path path;
+        try {
+            path = root.resolve(name).normalize();
+        } catch (InvalidPathException e) {
+            throw new InvalidFileNameException();
+        }
+        if (!path.startsWith(root) || path.equals(root)) {
+            throw new InvalidFileNameException();
+        }
+        return path;
+    }
+
+    private static StoredFile toStoredFile(final Path path, final BasicFileAttributes attributes) {
+        return new StoredFile(path.getFileName().toString(), attributes.size(), attributes.lastModifiedTime().toMillis());
     }
 }
@@ -0,0 +1,47 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.storage;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The subset of an S3-compatible object store API used by {@link ObjectStoreStorage}.
+ */
+public interface ObjectStoreClient {
+    boolean bucketExists(String bucket);
+
+    void putObject(String bucket, String key, byte[] bytes);
+
+    Optional<byte[]> getObject(String bucket, String key);
+
+    boolean deleteObject(String bucket, String key);
+
+    List<StoredFile> listObjects(String bucket);
+
+    Optional<StoredFile> headObject(String bucket, String key);
+
+    /**
+     * @return the upload id to pass to the part, complete and abort calls
+     */
+    String initiateMultipartUpload(String bucket, String key);
+
+    /**
+     * Sends {@code length} bytes of {@code bytes} from {@code offset} on, so
+     * callers can upload parts of one buffer without copying them.
+     *
+     * @param partNumber 1-based position of the part in the object
+     * @return the ETag of the part, needed to complete the upload
+     */
+    String uploadPart(String bucket, String key, String uploadId, int partNumber, byte[] bytes, int offset, int length);
+
+    /**
+     * @param partETags ETags of all parts, ordered by part number
+     */
+    void completeMultipartUpload(String bucket, String key, String uploadId, List<String> partETags);
+
+    void abortMultipartUpload(String bucket, String key, String uploadId);
+}
@@ -0,0 +1,34 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.storage;
+
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Active with {@code com.frequentis.tdd.storage.type=objectstore}, which
+ * requires an {@link ObjectStoreClient} bean of a real object store. Startup
+ * fails without one rather than keeping files somewhere they do not survive
+ * a restart.
+ */
+@Configuration
+@ConditionalOnProperty(name = "com.frequentis.tdd.storage.type", havingValue = "objectstore")
+public class ObjectStoreConfiguration {
+
+    @Bean
+    public ObjectStoreStorage objectStoreStorage(final Optional<ObjectStoreClient> objectStoreClient,
+                                                 final @Value("${com.frequentis.tdd.storage.objectstore.bucket:tdd}") String bucket,
+                                                 final @Value("${com.frequentis.tdd.storage.objectstore.partSize:5242880}") int partSize,
+                                                 final @Value("${com.frequentis.tdd.storage.objectstore.uploadThreads:8}") int uploadThreads) {
+        ObjectStoreClient client = objectStoreClient.orElseThrow(
+                () -> new IllegalStateException("com.frequentis.tdd.storage.type=objectstore needs an ObjectStoreClient bean"));
+        return new ObjectStoreStorage(client, bucket, partSize, Executors.newFixedThreadPool(uploadThreads));
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.storage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import javax.annotation.PreDestroy;
+
+/**
+ * Stores files as objects in one bucket. Files larger than the part size are
+ * sent as a multipart upload whose parts are uploaded in parallel.
+ */
+public class ObjectStoreStorage implements FileStorage {
+    private final ObjectStoreClient client;
+    private final String bucket;
+    private final int partSize;
+    private final ExecutorService partUploads;
+
+    public ObjectStoreStorage(final ObjectStoreClient client, final String bucket, final int partSize, final ExecutorService partUploads) {
+        this.client = client;
+        this.bucket = bucket;
+        this.partSize = partSize;
+        this.partUploads = partUploads;
+    }
+
+    @Override
+    public boolean exists() {
+        return client.bucketExists(bucket);
+    }
+
+    @Override
+    public void store(final String name, final byte[] bytes) throws IOException {
+        if (bytes.length <= partSize) {
+            client.putObject(bucket, name, bytes);
+            return;
+        }
+
+        String uploadId = client.initiateMultipartUpload(bucket, name);
+        List<Future<String>> parts = new ArrayList<>();
+        for (int offset = 0, partNumber = 1; offset < bytes.length; offset += partSize, partNumber++) {
+            int number = partNumber;
+            int partOffset = offset;
+            int partLength = Math.min(partSize, bytes.length - offset);
+            parts.add(partUploads.submit(() -> client.uploadPart(bucket, name, uploadId, number, bytes, partOffset, partLength)));
+        }
+
+        try {
+            List<String> partETags = new ArrayList<>(parts.size());
+            for (Future<String> part : parts) {
+                partETags.add(part.get());
+            }
+            client.completeMultipartUpload(bucket, name, uploadId, partETags);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort(name, uploadId, parts);
+            throw new IOException("Interrupted while uploading " + name, e);
+        } catch (ExecutionException | RuntimeException e) {
+            abort(name, uploadId, parts);
+            throw new IOException("Failed to upload " + name, e instanceof ExecutionException ? e.getCause() : e);
+        }
+    }
+
+    @Override
+    public Optional<byte[]> get(final String name) {
+        return client.getObject(bucket, name);
+    }
+
+    @Override
+    public boolean delete(final String name) {
+        return client.deleteObject(bucket, name);
+    }
+
+    @Override
+    public List<StoredFile> list() {
+        return client.listObjects(bucket);
+    }
+
+    @Override
+    public Optional<StoredFile> metadata(final String name) {
+        return client.headObject(bucket, name);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        partUploads.shutdown();
+    }
+
+    private void abort(final String name, final String uploadId, final List<Future<String>> parts) {
+        parts.forEach(part -> part.cancel(true));
+        client.abortMultipartUpload(bucket, name, uploadId);
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import com.frequentis.tdd.exceptions.ServiceOverloadedException;
+import com.frequentis.tdd.exceptions.StorageQuotaExceededException;
+
+/**
+ * Tracks stored bytes per owner and in total, updated on every store and
+ * delete rather than by scanning the storage, and limits the number of
+ * concurrent uploads. The counters are seeded from the stored files once at
+ * startup, so the quotas survive a restart. The free-space threshold only
+ * applies to the file system backend.
+ * <p>
+ * Owners are {@code tenant:user}, with {@value #ANONYMOUS_OWNER} for uploads
+ * without a user; files are stored as {@code tenant.user.name}.
+ */
+@Component
+public class StorageQuota {
+    public static final String ANONYMOUS_OWNER = "anonymous";
+    public static final char OWNER_SEPARATOR = ':';
+
+    private static final String FILESYSTEM_STORAGE = "filesystem";
+
+    private final FileStorage fileStorage;
+    private final long globalLimitBytes;
+    private final long perOwnerLimitBytes;
+    private final long minFreeBytes;
+    private final Path filePath;
+    private final boolean checkFreeSpace;
+    private final long writeWaitMillis;
+    private final Semaphore writes;
+    private final AtomicLong globalUsage = new AtomicLong();
+    private final ConcurrentMap<String, AtomicLong> ownerUsage = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, StoredBy> files = new ConcurrentHashMap<>();
+
+    @Autowired
+    public StorageQuota(final @Lazy FileStorage fileStorage,
+                        final @Value("${com.frequentis.tdd.storage.quota.globalBytes:1073741824}") long globalLimitBytes,
+                        final @Value("${com.frequentis.tdd.storage.quota.perUserBytes:52428800}") long perOwnerLimitBytes,
+                        final @Value("${com.frequentis.tdd.storage.quota.minFreeBytes:536870912}") long minFreeBytes,
+                        final @Value("${com.frequentis.tdd.filePath:${java.io.tmpdir}/tdd}") String filePath,
+                        final @Value("${com.frequentis.tdd.storage.type:filesystem}") String storageType,
+                        final @Value("${com.frequentis.tdd.storage.maxConcurrentWrites:4}") int maxConcurrentWrites,
+                        final @Value("${com.frequentis.tdd.storage.writeWaitMillis:500}") long writeWaitMillis) {
+        this.fileStorage = fileStorage;
+        this.globalLimitBytes = globalLimitBytes;
+        this.perOwnerLimitBytes = perOwnerLimitBytes;
+        this.minFreeBytes = minFreeBytes;
+        this.filePath = Paths.get(filePath);
+        this.checkFreeSpace = FILESYSTEM_STORAGE.equals(storageType);
+        this.writeWaitMillis = writeWaitMillis;
+        this.writes = new Semaphore(maxConcurrentWrites);
+    }
+
+    public static String owner(final String tenant, final Long userId) {
+        return tenant + OWNER_SEPARATOR + (userId != null ? userId.toString() : ANONYMOUS_OWNER);
+    }
+
+    /**
+     * @return the owner a stored file was accounted to, or {@code null} for
+     *         names that do not start with {@code tenant.user.}
+     */
+    static String ownerOf(final String name) {
+        int tenantEnd = name.indexOf('.');
+        int userEnd = tenantEnd < 0 ? -1 : name.indexOf('.', tenantEnd + 1);
+        if (userEnd < 0) {
+            return null;
+        }
+        return name.substring(0, tenantEnd) + OWNER_SEPARATOR + name.substring(tenantEnd + 1, userEnd);
+    }
+
+    /**
+     * Accounts the files already in the storage to their owners.
+     */
+    @PostConstruct
+    public void loadStoredFiles() throws IOException {
+        if (fileStorage.exists()) {
+            load(fileStorage.list());
+        }
+    }
+
+    void load(final Collection<StoredFile> storedFiles) {
+        for (StoredFile file : storedFiles) {
+            String owner = ownerOf(file.getName());
+            if (owner != null && files.putIfAbsent(file.getName(), new StoredBy(owner, file.getSize())) == null) {
+                globalUsage.addAndGet(file.getSize());
+                ownerUsage.computeIfAbsent(owner, key -> new AtomicLong()).addAndGet(file.getSize());
+            }
+        }
+    }
+
+    /**
+     * Admits an upload of the given request size before its body is read, if
+     * it fits the global and the owner's quota and the free-space threshold,
+     * and takes one of the upload slots. The caller must close the returned
+     * slot once the request is done.
+     */
+    public WriteSlot admit(final String owner, final long contentLength) {
+        if (contentLength > 0 && (globalUsage.get() + contentLength > globalLimitBytes
+                || usedBytes(owner) + contentLength > perOwnerLimitBytes
+                || !hasFreeSpaceFor(contentLength))) {
+            throw new StorageQuotaExceededException();
+        }
+
+        if (!acquireWriteSlot()) {
+            throw new ServiceOverloadedException();
+        }
+        return new WriteSlot();
+    }
+
+    /**
+     * Reserves quota for storing {@code size} bytes under {@code name}. The
+     * caller must close the reservation, after committing it once the bytes
+     * are written.
+     */
+    public Reservation reserve(final String owner, final String name, final long size) {
+        if (!hasFreeSpaceFor(size) || !tryAdd(globalUsage, size, globalLimitBytes)) {
+            throw new StorageQuotaExceededException();
+        }
+
+        AtomicLong usage = ownerUsage.computeIfAbsent(owner, key -> new AtomicLong());
+        if (!tryAdd(usage, size, perOwnerLimitBytes)) {
+            globalUsage.addAndGet(-size);
+            throw new StorageQuotaExceededException();
+        }
+        return new Reservation(owner, name, size);
+    }
+
+    /**
+     * Releases the quota held by a deleted file.
+     */
+    public void release(final String name) {
+        StoredBy stored = files.remove(name);
+        if (stored != null) {
+            release(stored.owner, stored.size);
+        }
+    }
+
+    public long usedBytes() {
+        return globalUsage.get();
+    }
+
+    public long usedBytes(final String owner) {
+        AtomicLong usage = ownerUsage.get(owner);
+        return usage == null ? 0 : usage.get();
+    }
+
+    private boolean acquireWriteSlot() {
+        try {
+            return writes.tryAcquire(writeWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private boolean hasFreeSpaceFor(final long size) {
+        if (!checkFreeSpace || !Files.exists(filePath)) {
+            return true;
+        }
+        try {
+            return Files.getFileStore(filePath).getUsableSpace() - size >= minFreeBytes;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void release(final String owner, final long size) {
+        globalUsage.addAndGet(-size);
+        ownerUsage.get(owner).addAndGet(-size);
+    }
+
+    private static boolean tryAdd(final AtomicLong counter, final long delta, final long limit) {
+        while (true) {
+            long used = counter.get();
+            if (used + delta > limit) {
+                return false;
+            }
+            if (counter.compareAndSet(used, used + delta)) {
+                return true;
+            }
+        }
+    }
+
+    public final class Reservation implements AutoCloseable {
+        private final String owner;
+        private final String name;
+        private final long size;
+        private boolean committed;
+
+        private Reservation(final String owner, final String name, final long size) {
+            this.owner = owner;
+            this.name = name;
+            this.size = size;
+        }
+
+        /**
+         * Accounts the reserved bytes to the stored file, releasing the quota
+         * held by the file it replaced.
+         */
+        public void commit() {
+            committed = true;
+            StoredBy previous = files.put(name, new StoredBy(owner, size));
+            if (previous != null) {
+                release(previous.owner, previous.size);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!committed) {
+                release(owner, size);
+            }
+        }
+    }
+
+    public final class WriteSlot implements AutoCloseable {
+        private WriteSlot() {
+        }
+
+        @Override
+        public void close() {
+            writes.release();
+        }
+    }
+
+    private static final class StoredBy {
+        private final String owner;
+        private final long size;
+
+        private StoredBy(final String owner, final long size) {
+            this.owner = owner;
+            this.size = size;
+        }
+    }
+}
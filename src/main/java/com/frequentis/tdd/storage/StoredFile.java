@@ -0,0 +1,62 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.storage;
+
+import java.util.Objects;
+
+public class StoredFile {
+    private final String name;
+    private final long size;
+    private final long lastModified;
+
+    public StoredFile(final String name, final long size, final long lastModified) {
+        this.name = name;
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        StoredFile that = (StoredFile) o;
+        return size == that.size
+                && lastModified == that.lastModified
+                && Objects.equals(name, that.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, size, lastModified);
+    }
+
+    @Override
+    public String toString() {
+        return "StoredFile{" +
+                "name='" + name + '\'' +
+                ", size=" + size +
+                ", lastModified=" + lastModified +
+                '}';
+    }
+}
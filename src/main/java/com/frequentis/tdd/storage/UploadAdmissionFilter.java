@@ -0,0 +1,85 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.storage;
+
+import java.io.IOException;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.frequentis.tdd.exceptions.ServiceOverloadedException;
+import com.frequentis.tdd.exceptions.StorageQuotaExceededException;
+import com.frequentis.tdd.tenant.TenantInterceptor;
+import com.frequentis.tdd.tenant.TenantRegistry;
+
+/**
+ * Admits uploads by their Content-Length before the multipart body is parsed,
+ * when they fit the global quota, the owner's quota and the free-space
+ * threshold, and holds an upload slot while the body is parsed and stored.
+ * The owner is resolved from the API key and the {@code userId} query
+ * parameter; form fields are not read here, as that would parse the body.
+ */
+@Component
+public class UploadAdmissionFilter extends OncePerRequestFilter {
+    private static final String USER_ID_PARAMETER = "userId";
+
+    private final StorageQuota storageQuota;
+    private final TenantRegistry tenantRegistry;
+
+    @Autowired
+    public UploadAdmissionFilter(final StorageQuota storageQuota, final TenantRegistry tenantRegistry) {
+        this.storageQuota = storageQuota;
+        this.tenantRegistry = tenantRegistry;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(final HttpServletRequest request) {
+        return !request.getRequestURI().endsWith("uploadImage") || !"POST".equals(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(final HttpServletRequest request, final HttpServletResponse response, final FilterChain filterChain)
+            throws ServletException, IOException {
+        String tenant = tenantRegistry.tenantOf(request.getHeader(TenantInterceptor.API_KEY_HEADER));
+        if (tenant == null) {
+            response.sendError(HttpStatus.FORBIDDEN.value(), "Tenant access denied");
+            return;
+        }
+
+        StorageQuota.WriteSlot slot;
+        try {
+            slot = storageQuota.admit(StorageQuota.owner(tenant, userId(request)), request.getContentLengthLong());
+        } catch (StorageQuotaExceededException e) {
+            response.sendError(HttpStatus.INSUFFICIENT_STORAGE.value(), "Storage quota exceeded");
+            return;
+        } catch (ServiceOverloadedException e) {
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Service overloaded, retry later");
+            return;
+        }
+        try (StorageQuota.WriteSlot ignored = slot) {
+            filterChain.doFilter(request, response);
+        }
+    }
+
+    /**
+     * @return the user id of the query string, {@code null} if there is none
+     *         or it is not a number, which the controller rejects
+     */
+    private static Long userId(final HttpServletRequest request) {
+        String userId = UriComponentsBuilder.newInstance().query(request.getQueryString()).build().getQueryParams().getFirst(USER_ID_PARAMETER);
+        try {
+            return userId != null ? Long.valueOf(userId) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.tenant;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import com.frequentis.tdd.exceptions.InvalidTenantException;
+import com.frequentis.tdd.exceptions.TenantAccessDeniedException;
+
+/**
+ * Binds the tenant granted by the {@code X-Api-Key} header to the request
+ * thread; requests without a key belong to the default tenant. An
+ * {@code X-Tenant-Id} header is only accepted if it names that same tenant.
+ */
+@Component
+public class TenantInterceptor extends HandlerInterceptorAdapter {
+    public static final String TENANT_HEADER = "X-Tenant-Id";
+    public static final String API_KEY_HEADER = "X-Api-Key";
+
+    private final TenantRegistry tenantRegistry;
+
+    @Autowired
+    public TenantInterceptor(final TenantRegistry tenantRegistry) {
+        this.tenantRegistry = tenantRegistry;
+    }
+
+    @Override
+    public boolean preHandle(final HttpServletRequest request, final HttpServletResponse response, final Object handler) {
+        String requested = request.getHeader(TENANT_HEADER);
+        if (requested != null && !TenantRegistry.isValidTenantId(requested)) {
+            throw new InvalidTenantException();
+        }
+
+        String tenant = tenantRegistry.tenantOf(request.getHeader(API_KEY_HEADER));
+        if (tenant == null || (requested != null && !requested.equals(tenant))) {
+            throw new TenantAccessDeniedException();
+        }
+        TenantContext.set(tenant);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(final HttpServletRequest request, final HttpServletResponse response, final Object handler, final Exception ex) {
+        TenantContext.clear();
+    }
+}
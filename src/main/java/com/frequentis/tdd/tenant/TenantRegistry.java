@@ -0,0 +1,69 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.tenant;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Maps API keys to the tenant their holder acts for. Callers without a key
+ * act for the default tenant, so only configured tenants ever appear in
+ * {@link TenantContext}.
+ */
+@Component
+public class TenantRegistry {
+    private static final Pattern TENANT_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    private final Map<String, String> tenantsByApiKey;
+    private final Set<String> tenants;
+
+    /**
+     * @param apiKeys comma separated {@code apiKey:tenantId} pairs; the
+     *                property is named {@code credentials} so the actuator
+     *                masks its value
+     */
+    @Autowired
+    public TenantRegistry(final @Value("${com.frequentis.tdd.tenant.credentials:}") String apiKeys) {
+        Map<String, String> parsed = Splitter.on(',').omitEmptyStrings().trimResults().withKeyValueSeparator(':').split(apiKeys);
+        for (String tenant : parsed.values()) {
+            if (!isValidTenantId(tenant)) {
+                throw new IllegalArgumentException("Invalid tenant id " + tenant);
+            }
+        }
+        this.tenantsByApiKey = ImmutableMap.copyOf(parsed);
+        this.tenants = ImmutableSet.<String>builder().add(TenantContext.DEFAULT_TENANT).addAll(parsed.values()).build();
+    }
+
+    /**
+     * @return the tenant of the given key, the default tenant for no key and
+     *         {@code null} for an unknown key
+     */
+    public String tenantOf(final String apiKey) {
+        return apiKey == null ? TenantContext.DEFAULT_TENANT : tenantsByApiKey.get(apiKey);
+    }
+
+    public boolean isKnown(final String tenant) {
+        return tenants.contains(tenant);
+    }
+
+    /**
+     * @return the default tenant and every tenant with a key
+     */
+    public Set<String> tenants() {
+        return tenants;
+    }
+
+    public static boolean isValidTenantId(final String tenant) {
+        return TENANT_ID.matcher(tenant).matches();
+    }
+}
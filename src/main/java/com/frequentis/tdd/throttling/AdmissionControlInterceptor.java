@@ -0,0 +1,76 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.throttling;
+
+import java.util.concurrent.Semaphore;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.metrics.CounterService;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import com.frequentis.tdd.exceptions.ServiceOverloadedException;
+import com.frequentis.tdd.exceptions.TooManyRequestsException;
+import com.frequentis.tdd.tenant.TenantContext;
+
+/**
+ * Rejects a request with 429 when its client exceeded the rate budget of the
+ * endpoint class, and with 503 when the configured number of requests is
+ * already in flight, so excess load is shed instead of queued. Runs after
+ * the tenant interceptor: callers authenticated for a tenant share that
+ * tenant's budget, anonymous callers are told apart by their address, which
+ * honours {@code X-Forwarded-For} from trusted proxies when
+ * {@code server.use-forward-headers} is set.
+ */
+@Component
+public class AdmissionControlInterceptor extends HandlerInterceptorAdapter {
+    private final RateLimiter rateLimiter;
+    private final CounterService counterService;
+    private final int maxConcurrentRequests;
+    private final Semaphore inFlight;
+
+    @Autowired
+    public AdmissionControlInterceptor(final RateLimiter rateLimiter,
+                                       final CounterService counterService,
+                                       final @Value("${com.frequentis.tdd.throttling.maxConcurrentRequests:64}") int maxConcurrentRequests) {
+        this.rateLimiter = rateLimiter;
+        this.counterService = counterService;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.inFlight = new Semaphore(maxConcurrentRequests);
+    }
+
+    @Override
+    public boolean preHandle(final HttpServletRequest request, final HttpServletResponse response, final Object handler) {
+        EndpointClass endpointClass = EndpointClass.of(request);
+        if (!rateLimiter.tryAcquire(client(request), endpointClass)) {
+            counterService.increment("throttling.rejected.rate." + endpointClass.name().toLowerCase());
+            throw new TooManyRequestsException();
+        }
+
+        if (!inFlight.tryAcquire()) {
+            counterService.increment("throttling.rejected.overload");
+            throw new ServiceOverloadedException();
+        }
+
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(final HttpServletRequest request, final HttpServletResponse response, final Object handler, final Exception ex) {
+        inFlight.release();
+    }
+
+    static String client(final HttpServletRequest request) {
+        String tenant = TenantContext.current();
+        return TenantContext.DEFAULT_TENANT.equals(tenant) ? request.getRemoteAddr() : "tenant:" + tenant;
+    }
+
+    public int inFlightRequests() {
+        return maxConcurrentRequests - inFlight.availablePermits();
+    }
+}
@@ -0,0 +1,22 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.throttling;
+
+import javax.servlet.http.HttpServletRequest;
+
+public enum EndpointClass {
+    READ,
+    WRITE,
+    UPLOAD;
+
+    public static EndpointClass of(final HttpServletRequest request) {
+        if (request.getRequestURI().endsWith("uploadImage")) {
+            return UPLOAD;
+        }
+
+        return "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod()) ? READ : WRITE;
+    }
+}
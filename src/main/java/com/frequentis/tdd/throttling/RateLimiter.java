@@ -0,0 +1,85 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.throttling;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps one {@link TokenBucket} per client and endpoint class. Buckets are
+ * created on first use; lookups of existing buckets do not lock. A bucket is
+ * dropped once it has been idle long enough to be full again, so eviction
+ * never hands a client more tokens than waiting would have. Buckets are never
+ * evicted for space: while {@code maxClients} buckets are live, requests of
+ * new clients are rejected instead.
+ */
+@Component
+public class RateLimiter {
+    private final Map<EndpointClass, Budget> budgets = new EnumMap<>(EndpointClass.class);
+    private final Map<EndpointClass, Cache<String, TokenBucket>> buckets = new EnumMap<>(EndpointClass.class);
+    private final long maxClients;
+
+    @Autowired
+    public RateLimiter(final @Value("${com.frequentis.tdd.throttling.read.perSecond:200}") double readsPerSecond,
+                       final @Value("${com.frequentis.tdd.throttling.read.burst:400}") int readBurst,
+                       final @Value("${com.frequentis.tdd.throttling.write.perSecond:20}") double writesPerSecond,
+                       final @Value("${com.frequentis.tdd.throttling.write.burst:40}") int writeBurst,
+                       final @Value("${com.frequentis.tdd.throttling.upload.perSecond:2}") double uploadsPerSecond,
+                       final @Value("${com.frequentis.tdd.throttling.upload.burst:5}") int uploadBurst,
+                       final @Value("${com.frequentis.tdd.throttling.maxClients:100000}") long maxClients) {
+        this.maxClients = maxClients;
+        budgets.put(EndpointClass.READ, new Budget(readsPerSecond, readBurst));
+        budgets.put(EndpointClass.WRITE, new Budget(writesPerSecond, writeBurst));
+        budgets.put(EndpointClass.UPLOAD, new Budget(uploadsPerSecond, uploadBurst));
+        for (EndpointClass endpointClass : EndpointClass.values()) {
+            buckets.put(endpointClass, CacheBuilder.newBuilder()
+                                                   .expireAfterAccess(budgets.get(endpointClass).refillNanos(), TimeUnit.NANOSECONDS)
+                                                   .build());
+        }
+    }
+
+    public boolean tryAcquire(final String client, final EndpointClass endpointClass) {
+        Cache<String, TokenBucket> cache = buckets.get(endpointClass);
+        ConcurrentMap<String, TokenBucket> clientBuckets = cache.asMap();
+        TokenBucket bucket = clientBuckets.get(client);
+        if (bucket == null) {
+            if (cache.size() >= maxClients) {
+                return false;
+            }
+            Budget budget = budgets.get(endpointClass);
+            bucket = clientBuckets.computeIfAbsent(client, key -> new TokenBucket(budget.perSecond, budget.burst));
+        }
+
+        return bucket.tryAcquire();
+    }
+
+    long trackedClients(final EndpointClass endpointClass) {
+        Cache<String, TokenBucket> clientBuckets = buckets.get(endpointClass);
+        clientBuckets.cleanUp();
+        return clientBuckets.size();
+    }
+
+    private static final class Budget {
+        private final double perSecond;
+        private final int burst;
+
+        private Budget(final double perSecond, final int burst) {
+            this.perSecond = perSecond;
+            this.burst = burst;
+        }
+
+        private long refillNanos() {
+            return (long) (TimeUnit.SECONDS.toNanos(1) / perSecond) * burst;
+        }
+    }
+}
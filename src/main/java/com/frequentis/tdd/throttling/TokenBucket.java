@@ -0,0 +1,48 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.throttling;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket. Instead of a token count it keeps the time at which
+ * the bucket would be full again (generic cell rate algorithm), so acquiring
+ * a token is a single compare-and-set on one long.
+ */
+public class TokenBucket {
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final AtomicLong theoreticalArrivalNanos;
+
+    public TokenBucket(final double tokensPerSecond, final int capacity) {
+        this(tokensPerSecond, capacity, System.nanoTime());
+    }
+
+    TokenBucket(final double tokensPerSecond, final int capacity, final long nowNanos) {
+        this.emissionIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / tokensPerSecond);
+        this.burstToleranceNanos = emissionIntervalNanos * capacity;
+        this.theoreticalArrivalNanos = new AtomicLong(nowNanos);
+    }
+
+    public boolean tryAcquire() {
+        return tryAcquire(System.nanoTime());
+    }
+
+    boolean tryAcquire(final long nowNanos) {
+        while (true) {
+            long arrival = theoreticalArrivalNanos.get();
+            long next = (arrival - nowNanos < 0 ? nowNanos : arrival) + emissionIntervalNanos;
+            if (next - nowNanos > burstToleranceNanos) {
+                return false;
+            }
+
+            if (theoreticalArrivalNanos.compareAndSet(arrival, next)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.tracing;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+/**
+ * Times the handler of a traced request as the {@value Trace#CONTROLLER}
+ * span. Registered last, so the span starts once every other interceptor has
+ * admitted the request; it ends when the response body is serialized, or
+ * when the handler returns without one.
+ */
+@Component
+public class ControllerSpanInterceptor extends HandlerInterceptorAdapter {
+
+    @Override
+    public boolean preHandle(final HttpServletRequest request, final HttpServletResponse response, final Object handler) {
+        Trace trace = Tracing.current();
+        if (trace != null) {
+            trace.startHandler();
+        }
+        return true;
+    }
+
+    @Override
+    public void postHandle(final HttpServletRequest request, final HttpServletResponse response, final Object handler,
+                           final ModelAndView modelAndView) {
+        Trace trace = Tracing.current();
+        if (trace != null) {
+            trace.endHandler();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.tracing;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Logs sampled requests slower than the threshold with their span breakdown
+ * and keeps the most recent of them, up to the capacity and no older than
+ * the window, for {@link SlowRequestsEndpoint}.
+ */
+@Component
+public class SlowRequestLog {
+    private static final Logger LOG = LoggerFactory.getLogger(SlowRequestLog.class);
+    private static final Comparator<Trace> BY_DURATION = Comparator.comparingLong(Trace::totalNanos);
+
+    private final long thresholdNanos;
+    private final int capacity;
+    private final long windowMillis;
+    private final Deque<Trace> recent;
+
+    @Autowired
+    public SlowRequestLog(final @Value("${com.frequentis.tdd.tracing.slowThresholdMillis:500}") long thresholdMillis,
+                          final @Value("${com.frequentis.tdd.tracing.slowestKept:50}") int capacity,
+                          final @Value("${com.frequentis.tdd.tracing.windowMillis:900000}") long windowMillis) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.capacity = capacity;
+        this.windowMillis = windowMillis;
+        this.recent = new ArrayDeque<>(capacity);
+    }
+
+    public void record(final Trace trace) {
+        if (trace.totalNanos() < thresholdNanos) {
+            return;
+        }
+
+        LOG.warn("Slow request {} took {} ms: {}", trace.getRequest(), trace.getTotalMillis(), trace.getBreakdownMillis());
+        synchronized (recent) {
+            if (recent.size() == capacity) {
+                recent.pollFirst();
+            }
+            recent.addLast(trace);
+        }
+    }
+
+    /**
+     * @return the kept requests of the window, slowest first
+     */
+    public List<Trace> slowest() {
+        return slowest(System.currentTimeMillis());
+    }
+
+    List<Trace> slowest(final long nowMillis) {
+        List<Trace> traces = new ArrayList<>();
+        synchronized (recent) {
+            for (Trace trace : recent) {
+                if (trace.getStartMillis() >= nowMillis - windowMillis) {
+                    traces.add(trace);
+                }
+            }
+        }
+        traces.sort(BY_DURATION.reversed());
+        return traces;
+    }
+}
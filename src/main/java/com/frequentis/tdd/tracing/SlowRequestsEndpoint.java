@@ -0,0 +1,32 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.tracing;
+
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes the slowest recent sampled requests on {@code /slowRequests}.
+ * Sensitive, as traces name request paths; disabled along with the other
+ * actuator endpoints by {@code endpoints.enabled=false}.
+ */
+@Component
+public class SlowRequestsEndpoint extends AbstractEndpoint<List<Trace>> {
+    private final SlowRequestLog slowRequestLog;
+
+    @Autowired
+    public SlowRequestsEndpoint(final SlowRequestLog slowRequestLog) {
+        super("slowRequests", true);
+        this.slowRequestLog = slowRequestLog;
+    }
+
+    @Override
+    public List<Trace> invoke() {
+        return slowRequestLog.slowest();
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.tracing;
+
+public class Span implements AutoCloseable {
+    static final Span NOOP = new Span(null, null);
+
+    private final Trace trace;
+    private final String name;
+    private final long startNanos;
+    private boolean closed;
+
+    Span(final Trace trace, final String name) {
+        this.trace = trace;
+        this.name = name;
+        this.startNanos = trace == null ? 0 : System.nanoTime();
+    }
+
+    @Override
+    public void close() {
+        if (trace != null && !closed) {
+            closed = true;
+            trace.record(name, System.nanoTime() - startNanos);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.tracing;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time spent per span name within one request. Only touched by the request
+ * thread, so it needs no synchronization.
+ */
+public class Trace {
+    public static final String CONTROLLER = "controller";
+    public static final String SERIALIZATION = "serialization";
+    public static final String OTHER = "other";
+
+    private final String request;
+    private final long startMillis = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Long> nanosBySpan = new LinkedHashMap<>();
+    private long spanNanos;
+    private long handlerStartNanos = -1;
+    private long handlerSpanNanos;
+    private Span serialization;
+    private long totalNanos;
+
+    public Trace(final String request) {
+        this.request = request;
+    }
+
+    Span startSpan(final String name) {
+        return new Span(this, name);
+    }
+
+    void record(final String name, final long nanos) {
+        nanosBySpan.merge(name, nanos, Long::sum);
+        spanNanos += nanos;
+    }
+
+    void startHandler() {
+        handlerStartNanos = System.nanoTime();
+        handlerSpanNanos = spanNanos;
+    }
+
+    /**
+     * Records the handler's own time as {@value #CONTROLLER}, leaving out
+     * the spans it opened, so the breakdown still adds up to the total.
+     */
+    void endHandler() {
+        if (handlerStartNanos >= 0) {
+            long nanos = System.nanoTime() - handlerStartNanos - (spanNanos - handlerSpanNanos);
+            handlerStartNanos = -1;
+            record(CONTROLLER, Math.max(0, nanos));
+        }
+    }
+
+    void startSerialization() {
+        endHandler();
+        if (serialization == null) {
+            serialization = startSpan(SERIALIZATION);
+        }
+    }
+
+    void finish() {
+        endHandler();
+        if (serialization != null) {
+            serialization.close();
+        }
+        totalNanos = System.nanoTime() - startNanos;
+        nanosBySpan.put(OTHER, Math.max(0, totalNanos - spanNanos));
+    }
+
+    public String getRequest() {
+        return request;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public double getTotalMillis() {
+        return toMillis(totalNanos);
+    }
+
+    public Map<String, Double> getBreakdownMillis() {
+        Map<String, Double> breakdown = new LinkedHashMap<>();
+        nanosBySpan.forEach((name, nanos) -> breakdown.put(name, toMillis(nanos)));
+        return breakdown;
+    }
+
+    long totalNanos() {
+        return totalNanos;
+    }
+
+    private static double toMillis(final long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.tracing;
+
+/**
+ * Entry point for recording spans of the request handled by the current
+ * thread. When the request is not sampled, {@link #span(String)} returns a
+ * shared no-op span, so instrumented code pays one thread-local lookup.
+ */
+public final class Tracing {
+    private static final ThreadLocal<Trace> CURRENT = new ThreadLocal<>();
+
+    private Tracing() {
+    }
+
+    public static Span span(final String name) {
+        Trace trace = CURRENT.get();
+        return trace == null ? Span.NOOP : trace.startSpan(name);
+    }
+
+    static Trace current() {
+        return CURRENT.get();
+    }
+
+    static void begin(final Trace trace) {
+        CURRENT.set(trace);
+    }
+
+    static Trace end() {
+        Trace trace = CURRENT.get();
+        CURRENT.remove();
+        return trace;
+    }
+}
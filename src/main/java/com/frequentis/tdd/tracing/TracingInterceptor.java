@@ -0,0 +1,48 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.tracing;
+
+import java.util.concurrent.ThreadLocalRandom;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+/**
+ * Starts a trace for a sampled fraction of requests and hands it to the
+ * {@link SlowRequestLog} once the response is written.
+ */
+@Component
+public class TracingInterceptor extends HandlerInterceptorAdapter {
+    private final SlowRequestLog slowRequestLog;
+    private final double sampleRate;
+
+    @Autowired
+    public TracingInterceptor(final SlowRequestLog slowRequestLog,
+                              final @Value("${com.frequentis.tdd.tracing.sampleRate:0.1}") double sampleRate) {
+        this.slowRequestLog = slowRequestLog;
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    public boolean preHandle(final HttpServletRequest request, final HttpServletResponse response, final Object handler) {
+        if (ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            Tracing.begin(new Trace(request.getMethod() + " " + request.getRequestURI()));
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(final HttpServletRequest request, final HttpServletResponse response, final Object handler, final Exception ex) {
+        Trace trace = Tracing.end();
+        if (trace != null) {
+            trace.finish();
+            slowRequestLog.record(trace);
+        }
+    }
+}
@@ -1,9 +1,29 @@
-DROP TABLE IF EXISTS users;
-
 CREATE TABLE IF NOT EXISTS users (
   id int(11) NOT NULL AUTO_INCREMENT,
+  tenant_id VARCHAR(64) DEFAULT 'default' NOT NULL,
   email varchar(200),
+  email_normalized VARCHAR(200),
   first_name VARCHAR(100),
   last_name VARCHAR(100) DEFAULT NULL,
+  deleted BOOLEAN DEFAULT FALSE NOT NULL,
   PRIMARY KEY (id)
 );
+
+-- Every statement is a no-op once a database is migrated, so running this
+-- script on each startup neither rewrites the table nor rebuilds an index.
+-- Tables created before email_normalized existed get the column here.
+-- unique_email replaces live_email, whose definitions changed over time;
+-- the old column and its index are dropped the one time they are found.
+-- Rows not yet backfilled fall back to the raw email: unique as before on
+-- unique_email, and found by their normalized form through lookup_email.
+ALTER TABLE users ADD COLUMN IF NOT EXISTS email_normalized VARCHAR(200) AFTER email;
+DROP INDEX IF EXISTS users_tenant_email;
+DROP INDEX IF EXISTS users_tenant_email_normalized;
+DROP INDEX IF EXISTS users_tenant_live_email;
+ALTER TABLE users DROP COLUMN IF EXISTS live_email;
+ALTER TABLE users ADD COLUMN IF NOT EXISTS unique_email VARCHAR(200) AS CASEWHEN(deleted, NULL, COALESCE(email_normalized, email));
+ALTER TABLE users ADD COLUMN IF NOT EXISTS lookup_email VARCHAR(200) AS COALESCE(email_normalized, LOWER(TRIM(email)));
+
+CREATE INDEX IF NOT EXISTS users_tenant_id ON users (tenant_id, id);
+CREATE INDEX IF NOT EXISTS users_tenant_lookup_email ON users (tenant_id, lookup_email);
+CREATE UNIQUE INDEX IF NOT EXISTS users_tenant_unique_email ON users (tenant_id, unique_email);
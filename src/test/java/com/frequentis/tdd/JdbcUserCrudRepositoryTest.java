@@ -0,0 +1,170 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd;
+
+import com.google.common.collect.Lists;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.JdbcUpdateAffectedIncorrectNumberOfRowsException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import com.frequentis.tdd.data.Users;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class JdbcUserCrudRepositoryTest {
+    private static final String TENANT = "tenant";
+    private static final String OTHER_TENANT = "other";
+
+    private EmbeddedDatabase database;
+    private JdbcUserCrudRepository sut;
+
+    @Before
+    public void setUp() {
+        database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2)
+                                                .generateUniqueName(true)
+                                                .addScript("schema.sql")
+                                                .build();
+        sut = new JdbcUserCrudRepository(new NamedParameterJdbcTemplate(database));
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void save_newUser_assignsIdAndIsFoundByTenantAndNormalizedEmail() throws Exception {
+        // Given
+        User user = inTenant(Users.random(), TENANT);
+        user.setEmail(user.getEmail().toUpperCase());
+
+        // When
+        User saved = sut.save(user);
+
+        // Then
+        assertThat("Expected saved user to be found",
+                   sut.findByTenantIdAndNormalizedEmail(TENANT, Emails.normalize(user.getEmail())), equalTo(saved));
+    }
+
+    @Test
+    public void findByTenantIdAndNormalizedEmail_rowNotBackfilled_findsRowByRawEmail() throws Exception {
+        // Given
+        new JdbcTemplate(database).update("INSERT INTO users (tenant_id, email) VALUES (?, ?)", TENANT, " Ann@Example.com");
+
+        // When
+        User actual = sut.findByTenantIdAndNormalizedEmail(TENANT, "ann@example.com");
+
+        // Then
+        assertThat("Expected row without normalized email to be found", actual.getEmail(), equalTo(" Ann@Example.com"));
+    }
+
+    @Test
+    public void save_existingUser_updatesRow() throws Exception {
+        // Given
+        User saved = sut.save(inTenant(Users.random(), TENANT));
+        User update = inTenant(new User(saved.getId(), "changed", "changed", saved.getEmail()), TENANT);
+
+        // When
+        sut.save(update);
+
+        // Then
+        assertThat("Expected updated user", sut.findByTenantIdAndId(TENANT, saved.getId()), equalTo(update));
+        assertThat("Expected no additional row", sut.count(), equalTo(1L));
+    }
+
+    @Test(expected = JdbcUpdateAffectedIncorrectNumberOfRowsException.class)
+    public void save_idOfUserInOtherTenant_throwsJdbcUpdateAffectedIncorrectNumberOfRowsException() throws Exception {
+        // Given
+        User saved = sut.save(inTenant(Users.random(), OTHER_TENANT));
+
+        // When
+        sut.save(inTenant(new User(saved.getId(), "changed", "changed", saved.getEmail()), TENANT));
+
+        // Then
+        // throws exception
+    }
+
+    @Test(expected = JdbcUpdateAffectedIncorrectNumberOfRowsException.class)
+    public void save_idOfDeletedUser_throwsJdbcUpdateAffectedIncorrectNumberOfRowsException() throws Exception {
+        // Given
+        User saved = sut.save(inTenant(Users.random(), TENANT));
+        sut.delete(saved.getId());
+
+        // When
+        sut.save(inTenant(new User(saved.getId(), "changed", "changed", saved.getEmail()), TENANT));
+
+        // Then
+        // throws exception
+    }
+
+    @Test(expected = EmptyResultDataAccessException.class)
+    public void delete_softDeletedUser_throwsEmptyResultDataAccessException() throws Exception {
+        // Given
+        User saved = sut.save(inTenant(Users.random(), TENANT));
+        sut.softDelete(TENANT, saved.getId());
+
+        // When
+        sut.delete(saved.getId());
+
+        // Then
+        // throws exception
+    }
+
+    @Test
+    public void findByTenantIdAndId_userOfOtherTenant_returnsNull() throws Exception {
+        // Given
+        User saved = sut.save(inTenant(Users.random(), OTHER_TENANT));
+
+        // When
+        User actual = sut.findByTenantIdAndId(TENANT, saved.getId());
+
+        // Then
+        assertThat("Expected user of other tenant to be invisible", actual, nullValue());
+    }
+
+    @Test
+    public void softDelete_savedUser_hidesUserFromReads() throws Exception {
+        // Given
+        User saved = sut.save(inTenant(Users.random(), TENANT));
+
+        // When
+        int deleted = sut.softDelete(TENANT, saved.getId());
+
+        // Then
+        assertThat("Expected one row marked deleted", deleted, equalTo(1));
+        assertThat("Expected deleted user to be hidden", sut.findOne(saved.getId()), nullValue());
+        assertThat("Expected tombstone to be purged", sut.purgeTombstones(10), equalTo(1));
+    }
+
+    @Test
+    public void findByTenantIdAndIdIn_mixedTenants_returnsOnlyUsersOfTenant() throws Exception {
+        // Given
+        User first = sut.save(inTenant(Users.random(), TENANT));
+        User second = sut.save(inTenant(Users.random(), TENANT));
+        User foreign = sut.save(inTenant(Users.random(), OTHER_TENANT));
+
+        // When
+        List<User> actual = sut.findByTenantIdAndIdIn(TENANT, Lists.newArrayList(first.getId(), second.getId(), foreign.getId()));
+
+        // Then
+        assertThat("Expected only users of tenant", actual, equalTo(Lists.newArrayList(first, second)));
+    }
+
+    private static User inTenant(final User user, final String tenant) {
+        user.setTenantId(tenant);
+        return user;
+    }
+}
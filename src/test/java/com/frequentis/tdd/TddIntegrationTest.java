@@ -5,14 +5,20 @@
  */
 package com.frequentis.tdd;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.google.common.io.ByteStreams;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.List;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -31,26 +37,37 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
 
 import com.frequentis.tdd.data.Randoms;
 import com.frequentis.tdd.data.Users;
+import com.frequentis.tdd.tenant.TenantInterceptor;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.fileUpload;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 @SpringApplicationConfiguration(classes = Application.class, initializers = ConfigFileApplicationContextInitializer.class)
 @WebAppConfiguration
-@TestPropertySource(properties = "com.frequentis.tdd.filePath=D:\\\\tdd_test")
+@TestPropertySource(properties = {"com.frequentis.tdd.filePath=D:\\\\tdd_test",
+                                  "com.frequentis.tdd.throttling.write.burst=1000",
+                                  "com.frequentis.tdd.tenant.credentials=" + TddIntegrationTest.OTHER_TENANT_API_KEY + ":other"})
 public class TddIntegrationTest {
+    static final String OTHER_TENANT_API_KEY = "otherTenantKey";
+
     private MediaType contentType = new MediaType(MediaType.APPLICATION_JSON.getType(),
                                                   MediaType.APPLICATION_JSON.getSubtype(),
                                                   Charset.forName("utf8"));
@@ -63,6 +80,9 @@ public class TddIntegrationTest {
     @Autowired
     private WebApplicationContext webApplicationContext;
 
+    @Autowired
+    private ShallowEtagHeaderFilter etagFilter;
+
     private HttpMessageConverter mappingJackson2HttpMessageConverter;
 
     @Autowired
@@ -77,7 +97,7 @@ public class TddIntegrationTest {
 
     @Before
     public void setUp() throws IOException {
-        mockMvc = webAppContextSetup(webApplicationContext).build();
+        mockMvc = webAppContextSetup(webApplicationContext).addFilters(etagFilter).build();
     }
 
     @Test
@@ -109,6 +129,185 @@ public class TddIntegrationTest {
         mockMvc.perform(get("/user/" + user.getId()).contentType(contentType)).andExpect(status().isOk());
     }
 
+    @Test
+    public void getOne_userPresent_respondsWithEtag() throws Exception {
+        // Given
+        User user = prepareUserInRepository();
+
+        // When/Then
+        mockMvc.perform(get("/user/" + user.getId()).contentType(contentType)).andExpect(header().string("ETag", notNullValue()));
+    }
+
+    @Test
+    public void getOne_etagMatches_respondsWithNotModified() throws Exception {
+        // Given
+        User user = prepareUserInRepository();
+        MvcResult mvcResult = mockMvc.perform(get("/user/" + user.getId()).contentType(contentType)).andReturn();
+        String etag = mvcResult.getResponse().getHeader("ETag");
+
+        // When/Then
+        mockMvc.perform(get("/user/" + user.getId()).contentType(contentType).header("If-None-Match", etag)).andExpect(status().isNotModified());
+    }
+
+    @Test
+    public void getOne_userUpdatedAfterRead_respondsWithUpdatedUser() throws Exception {
+        // Given
+        User user = prepareUserInRepository();
+        mockMvc.perform(get("/user/" + user.getId()).contentType(contentType)).andExpect(status().isOk());
+        user.setLastName(Randoms.randomAlphanumeric("lastName_"));
+        mockMvc.perform(put("/user/").contentType(contentType).content(json(user))).andExpect(status().isOk());
+
+        // When/Then
+        mockMvc.perform(get("/user/" + user.getId()).contentType(contentType))
+               .andExpect(status().isOk())
+               .andExpect(content().string(containsString(user.getLastName())));
+    }
+
+    @Test
+    public void getAll_smileAccepted_respondsWithSmile() throws Exception {
+        // Given
+        prepareUserInRepository();
+
+        // When/Then
+        mockMvc.perform(get("/user/all").accept(SmileHttpMessageConverter.APPLICATION_SMILE))
+               .andExpect(status().isOk())
+               .andExpect(content().contentTypeCompatibleWith(SmileHttpMessageConverter.APPLICATION_SMILE));
+    }
+
+    @Test
+    public void insert_smileUserWithUnknownProperty_respondsWithOk() throws Exception {
+        // Given
+        ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+        ObjectNode user = smileMapper.valueToTree(Users.random());
+        user.put("unknownProperty", Randoms.randomAlphanumeric("value_"));
+
+        // When/Then
+        mockMvc.perform(post("/user/").contentType(SmileHttpMessageConverter.APPLICATION_SMILE).content(smileMapper.writeValueAsBytes(user)))
+               .andExpect(status().isOk());
+    }
+
+    @Test
+    public void actuator_configurationEndpoints_respondWithNotFound() throws Exception {
+        // When/Then
+        for (String endpoint : Arrays.asList("/env", "/configprops", "/trace", "/dump", "/mappings", "/beans", "/slowRequests")) {
+            mockMvc.perform(get(endpoint)).andExpect(status().isNotFound());
+        }
+    }
+
+    @Test
+    public void actuator_health_respondsWithOk() throws Exception {
+        // When/Then
+        mockMvc.perform(get("/health")).andExpect(status().isOk());
+    }
+
+    @Test
+    public void getAll_anyAccepted_respondsWithJson() throws Exception {
+        // Given
+        prepareUserInRepository();
+
+        // When/Then
+        mockMvc.perform(get("/user/all").accept(MediaType.ALL))
+               .andExpect(status().isOk())
+               .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    public void getOne_userOfOtherTenant_respondsWithoutUser() throws Exception {
+        // Given
+        User user = prepareUserInRepository();
+
+        // When/Then
+        mockMvc.perform(get("/user/" + user.getId()).contentType(contentType).header(TenantInterceptor.API_KEY_HEADER, OTHER_TENANT_API_KEY))
+               .andExpect(status().isOk())
+               .andExpect(content().string(""));
+    }
+
+    @Test
+    public void insert_emailUsedInOtherTenant_respondsWithOk() throws Exception {
+        // Given
+        User user = prepareUserInRepository();
+        User sameEmail = Users.random();
+        sameEmail.setEmail(user.getEmail());
+
+        // When/Then
+        mockMvc.perform(post("/user/").contentType(contentType).content(json(sameEmail)).header(TenantInterceptor.API_KEY_HEADER, OTHER_TENANT_API_KEY))
+               .andExpect(status().isOk());
+    }
+
+    @Test
+    public void getAll_tenantWithoutApiKey_respondsWithForbidden() throws Exception {
+        // When/Then
+        mockMvc.perform(get("/user/all").contentType(contentType).header(TenantInterceptor.TENANT_HEADER, "other"))
+               .andExpect(status().isForbidden());
+    }
+
+    @Test
+    public void getAll_unknownApiKey_respondsWithForbidden() throws Exception {
+        // When/Then
+        mockMvc.perform(get("/user/all").contentType(contentType).header(TenantInterceptor.API_KEY_HEADER, Randoms.randomAlphanumeric("key_")))
+               .andExpect(status().isForbidden());
+    }
+
+    @Test
+    public void insert_idOfUserInOtherTenant_createsNewUser() throws Exception {
+        // Given
+        User user = prepareUserInRepository();
+        User sameId = new User(user.getId(), Randoms.randomAlphabetic("firstName_"), Randoms.randomAlphabetic("lastName_"), Users.randomEmail());
+
+        // When
+        mockMvc.perform(post("/user/").contentType(contentType).content(json(sameId)).header(TenantInterceptor.API_KEY_HEADER, OTHER_TENANT_API_KEY))
+               .andExpect(status().isOk());
+
+        // Then
+        mockMvc.perform(get("/user/" + user.getId()).contentType(contentType))
+               .andExpect(status().isOk())
+               .andExpect(content().string(containsString(user.getEmail())));
+    }
+
+    @Test
+    public void insert_emailAlreadyUsed_respondsWithConflict() throws Exception {
+        // Given
+        User user = prepareUserInRepository();
+        User sameEmail = Users.random();
+        sameEmail.setEmail(user.getEmail());
+
+        // When/Then
+        mockMvc.perform(post("/user/").contentType(contentType).content(json(sameEmail))).andExpect(status().isConflict());
+    }
+
+    @Test
+    public void insert_firstNameTooLong_respondsWithBadRequest() throws Exception {
+        // Given
+        User user = Users.random();
+        user.setFirstName(Randoms.randomAlphanumeric(150));
+
+        // When/Then
+        mockMvc.perform(post("/user/").contentType(contentType).content(json(user))).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void insert_emailAlreadyUsedInOtherCase_respondsWithConflict() throws Exception {
+        // Given
+        User user = prepareUserInRepository();
+        User sameEmail = Users.random();
+        sameEmail.setEmail(user.getEmail().toUpperCase());
+
+        // When/Then
+        mockMvc.perform(post("/user/").contentType(contentType).content(json(sameEmail))).andExpect(status().isConflict());
+    }
+
+    @Test
+    public void insert_emailOfDeletedUser_respondsWithOk() throws Exception {
+        // Given
+        User user = prepareUserInRepository();
+        mockMvc.perform(delete("/user/" + user.getId()).contentType(contentType)).andExpect(status().isOk());
+        User sameEmail = Users.random();
+        sameEmail.setEmail(user.getEmail());
+
+        // When/Then
+        mockMvc.perform(post("/user/").contentType(contentType).content(json(sameEmail))).andExpect(status().isOk());
+    }
+
     @Test
     public void update_userPresent_respondsWithUpdatedUser() throws Exception {
         // Given
@@ -128,6 +327,72 @@ public class TddIntegrationTest {
         mockMvc.perform(delete("/user/" + user.getId()).contentType(contentType)).andExpect(status().isOk());
     }
 
+    @Test
+    public void delete_userAlreadyDeleted_respondsWithNotFound() throws Exception {
+        // Given
+        User user = prepareUserInRepository();
+        mockMvc.perform(delete("/user/" + user.getId()).contentType(contentType)).andExpect(status().isOk());
+
+        // When/Then
+        mockMvc.perform(delete("/user/" + user.getId()).contentType(contentType)).andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void bulkDelete_usersPresent_respondsWithNumberOfDeletedUsers() throws Exception {
+        // Given
+        User first = prepareUserInRepository();
+        User second = prepareUserInRepository();
+        String ids = "[" + first.getId() + "," + second.getId() + "]";
+
+        // When/Then
+        mockMvc.perform(post("/user/bulkDelete").contentType(contentType).content(ids))
+               .andExpect(status().isOk())
+               .andExpect(content().string("2"));
+    }
+
+    @Test
+    public void export_usersPresent_writesEveryUserToCsv() throws Exception {
+        // Given
+        User user = prepareUserInRepository();
+
+        // When
+        JsonNode result = awaitExport(startExport(null), null);
+
+        // Then
+        List<String> csv = exportedCsv(result, null);
+        assertThat("Expected export to succeed", result.get("state").asText(), equalTo("DONE"));
+        assertThat("Expected no server path in result", result.has("directory"), equalTo(false));
+        assertThat("Expected header line", csv.get(0), equalTo("id,tenant_id,email,first_name,last_name"));
+        assertThat("Expected one line per exported row", (long) csv.size() - 1, equalTo(result.get("rows").asLong()));
+        assertThat("Expected created user in export",
+                   csv.contains(user.getId() + ",default," + user.getEmail() + "," + user.getFirstName() + "," + user.getLastName()),
+                   equalTo(true));
+    }
+
+    @Test
+    public void export_otherTenant_writesOnlyUsersOfThatTenant() throws Exception {
+        // Given
+        prepareUserInRepository();
+
+        // When
+        JsonNode result = awaitExport(startExport(OTHER_TENANT_API_KEY), OTHER_TENANT_API_KEY);
+
+        // Then
+        for (String line : exportedCsv(result, OTHER_TENANT_API_KEY).subList(1, (int) result.get("rows").asLong() + 1)) {
+            assertThat("Expected only users of the other tenant", line, containsString(",other,"));
+        }
+    }
+
+    @Test
+    public void exportStatus_exportOfOtherTenant_respondsWithNotFound() throws Exception {
+        // Given
+        String id = startExport(null);
+
+        // When/Then
+        mockMvc.perform(get("/user/export/" + id).header(TenantInterceptor.API_KEY_HEADER, OTHER_TENANT_API_KEY))
+               .andExpect(status().isNotFound());
+    }
+
     @Test
     public void upload_image_respondsWithOk() throws Exception {
         // Given
@@ -143,6 +408,34 @@ public class TddIntegrationTest {
         clearFileStorage();
     }
 
+    private String startExport(final String apiKey) throws Exception {
+        MvcResult mvcResult = mockMvc.perform(withApiKey(post("/user/export"), apiKey)).andExpect(status().isAccepted()).andReturn();
+        return new ObjectMapper().readTree(mvcResult.getResponse().getContentAsString()).get("id").asText();
+    }
+
+    private JsonNode awaitExport(final String id, final String apiKey) throws Exception {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (true) {
+            MvcResult mvcResult = mockMvc.perform(withApiKey(get("/user/export/" + id), apiKey)).andExpect(status().isOk()).andReturn();
+            JsonNode result = new ObjectMapper().readTree(mvcResult.getResponse().getContentAsString());
+            if (!"RUNNING".equals(result.get("state").asText()) || System.currentTimeMillis() > deadline) {
+                return result;
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private List<String> exportedCsv(final JsonNode result, final String apiKey) throws Exception {
+        MvcResult mvcResult = mockMvc.perform(withApiKey(get("/user/export/" + result.get("id").asText() + "/users.csv"), apiKey))
+                                     .andExpect(status().isOk())
+                                     .andReturn();
+        return Arrays.asList(new String(mvcResult.getResponse().getContentAsByteArray(), StandardCharsets.UTF_8).split("\n"));
+    }
+
+    private static MockHttpServletRequestBuilder withApiKey(final MockHttpServletRequestBuilder request, final String apiKey) {
+        return apiKey == null ? request : request.header(TenantInterceptor.API_KEY_HEADER, apiKey);
+    }
+
     private void prepareFileStorage() throws IOException {
         Path path = Paths.get(filePath);
         if (!Files.exists(path)){
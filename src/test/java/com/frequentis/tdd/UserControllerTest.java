@@ -9,15 +9,22 @@ import junitparams.Parameters;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.frequentis.tdd.data.Randoms;
 import com.frequentis.tdd.data.Users;
 import com.frequentis.tdd.exceptions.EmailAlreadyUsedException;
 import com.frequentis.tdd.exceptions.FileStorageNotPreparedException;
+import com.frequentis.tdd.exceptions.ImageNotFoundException;
 import com.frequentis.tdd.exceptions.InvalidEmailException;
+import com.frequentis.tdd.exceptions.InvalidUserException;
+import com.frequentis.tdd.exceptions.StorageQuotaExceededException;
+import com.frequentis.tdd.exceptions.TooManyIdsException;
 import com.frequentis.tdd.exceptions.UserNotFoundException;
 import com.frequentis.tdd.storage.FileStorage;
+import com.frequentis.tdd.storage.StorageQuota;
+import com.frequentis.tdd.tenant.TenantContext;
 
 import static junitparams.JUnitParamsRunner.$;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -31,16 +38,21 @@ import static org.mockito.Mockito.when;
 
 @RunWith(JUnitParamsRunner.class)
 public class UserControllerTest {
+    private static final long QUOTA_BYTES = 1024;
+    private static final int MAX_BULK_DELETE_IDS = 2;
+
     private UserController sut;
     private UserRepository userRepository;
     private FileStorage fileStorage;
+    private StorageQuota storageQuota;
 
     @Before
     public void setUp(){
         userRepository = mock(UserRepository.class);
         fileStorage = mock(FileStorage.class);
         when(userRepository.findByEmail(argThat(instanceOf(String.class)))).thenReturn(Optional.empty());
-        sut = new UserController(userRepository, fileStorage);
+        storageQuota = new StorageQuota(fileStorage, QUOTA_BYTES, QUOTA_BYTES, 0, Randoms.randomAlphanumeric("missingPath_"), "filesystem", 1, 0);
+        sut = new UserController(userRepository, fileStorage, storageQuota, MAX_BULK_DELETE_IDS);
     }
 
     @Test
@@ -68,6 +80,32 @@ public class UserControllerTest {
         // throws exception
     }
 
+    @Test(expected = EmailAlreadyUsedException.class)
+    public void create_uniqueConstraintViolated_throwsEmailAlreadyUsedException(){
+        // Given
+        User user = Users.random();
+        when(userRepository.save(user)).thenThrow(new DataIntegrityViolationException("users_tenant_unique_email"));
+
+        // When
+        sut.create(user);
+
+        // Then
+        // throws exception
+    }
+
+    @Test(expected = InvalidUserException.class)
+    public void create_otherConstraintViolated_throwsInvalidUserException(){
+        // Given
+        User user = Users.random();
+        when(userRepository.save(user)).thenThrow(new DataIntegrityViolationException("Value too long for column FIRST_NAME"));
+
+        // When
+        sut.create(user);
+
+        // Then
+        // throws exception
+    }
+
     @Test(expected = InvalidEmailException.class)
     @Parameters(method = "invalidEmailAddresses")
     public void create_userWithInvalidEmail_throwsInvalidEmailException(final String invalidEmail){
@@ -207,13 +245,38 @@ public class UserControllerTest {
         // throws exception
     }
 
+    @Test
+    public void deleteAll_ids_returnsNumberOfDeletedUsers(){
+        // Given
+        List<Long> ids = Lists.newArrayList(Randoms.randomLong(), Randoms.randomLong());
+        when(userRepository.deleteAll(ids)).thenReturn(ids.size());
+
+        // When
+        int actualDeleted = sut.deleteAll(ids);
+
+        // Then
+        assertThat("Expected number of deleted users to match", actualDeleted, equalTo(ids.size()));
+    }
+
+    @Test(expected = TooManyIdsException.class)
+    public void deleteAll_moreIdsThanLimit_throwsTooManyIdsException(){
+        // Given
+        List<Long> ids = Lists.newArrayList(Randoms.randomLong(), Randoms.randomLong(), Randoms.randomLong());
+
+        // When
+        sut.deleteAll(ids);
+
+        // Then
+        // throws exception
+    }
+
     @Test(expected = FileStorageNotPreparedException.class)
     public void uploadImage_fileStorageNotPresent_throwsFileStorageNotPreparedException() throws IOException {
         // Given
         when(fileStorage.exists()).thenReturn(false);
 
         // When
-        sut.uploadImage(createMultipartFile());
+        sut.uploadImage(createMultipartFile(), null);
 
         // Then
         // throws exception
@@ -226,16 +289,112 @@ public class UserControllerTest {
         when(fileStorage.exists()).thenReturn(true);
 
         // When
-        sut.uploadImage(multipartFile);
+        sut.uploadImage(multipartFile, null);
+
+        // Then
+        verify(fileStorage).store(UserController.imageName(TenantContext.DEFAULT_TENANT + ":anonymous", multipartFile.getOriginalFilename()), multipartFile.getBytes());
+    }
+
+    @Test
+    public void uploadImage_filesOfDifferentUsers_accountsEachToItsUser() throws IOException {
+        // Given
+        User user = prepareUserInRepository();
+        User otherUser = prepareUserInRepository();
+        MultipartFile multipartFile = createMultipartFile();
+        MultipartFile otherMultipartFile = createMultipartFile();
+        when(fileStorage.exists()).thenReturn(true);
+
+        // When
+        sut.uploadImage(multipartFile, user.getId());
+        sut.uploadImage(otherMultipartFile, otherUser.getId());
 
         // Then
-        verify(fileStorage).store(multipartFile.getName(), multipartFile.getBytes());
+        assertThat("Expected usage of both users", storageQuota.usedBytes(), equalTo(multipartFile.getSize() + otherMultipartFile.getSize()));
+    }
+
+    @Test(expected = UserNotFoundException.class)
+    public void uploadImage_unknownUser_throwsUserNotFoundException() throws IOException {
+        // Given
+        when(fileStorage.exists()).thenReturn(true);
+
+        // When
+        sut.uploadImage(createMultipartFile(), Randoms.randomLong());
+
+        // Then
+        // throws exception
+    }
+
+    @Test
+    public void deleteImage_imagePresent_releasesQuota() throws IOException {
+        // Given
+        MultipartFile multipartFile = createMultipartFile();
+        when(fileStorage.exists()).thenReturn(true);
+        when(fileStorage.delete(argThat(instanceOf(String.class)))).thenReturn(true);
+        sut.uploadImage(multipartFile, null);
+
+        // When
+        sut.deleteImage(multipartFile.getOriginalFilename(), null);
+
+        // Then
+        assertThat("Expected quota released", storageQuota.usedBytes(), equalTo(0L));
+    }
+
+    @Test(expected = ImageNotFoundException.class)
+    public void deleteImage_imageNotPresent_throwsImageNotFoundException() throws IOException {
+        // When
+        sut.deleteImage(Randoms.randomAlphanumeric("fileName_"), null);
+
+        // Then
+        // throws exception
+    }
+
+    @Test
+    @Parameters(method = "unsafeImageNames")
+    public void imageName_unsafeName_staysWithinOwnerPrefix(final String originalFilename){
+        // When
+        String actualName = UserController.imageName("tenant:1", originalFilename);
+
+        // Then
+        assertThat("Expected name to keep owner prefix", actualName.startsWith("tenant.1."), equalTo(true));
+        assertThat("Expected no path separators", actualName.matches("[A-Za-z0-9._-]+"), equalTo(true));
+    }
+
+    @Test
+    public void uploadImage_fileStoragePresent_accountsStoredBytesToUser() throws IOException {
+        // Given
+        MultipartFile multipartFile = createMultipartFile();
+        Long userId = prepareUserInRepository().getId();
+        when(fileStorage.exists()).thenReturn(true);
+
+        // When
+        sut.uploadImage(multipartFile, userId);
+
+        // Then
+        assertThat("Expected stored bytes accounted to user", storageQuota.usedBytes(TenantContext.DEFAULT_TENANT + ":" + userId), equalTo(multipartFile.getSize()));
+    }
+
+    @Test(expected = StorageQuotaExceededException.class)
+    public void uploadImage_quotaExceeded_throwsStorageQuotaExceededException() throws IOException {
+        // Given
+        MultipartFile multipartFile = createMultipartFile();
+        when(multipartFile.getSize()).thenReturn(QUOTA_BYTES + 1);
+        when(fileStorage.exists()).thenReturn(true);
+
+        // When
+        sut.uploadImage(multipartFile, null);
+
+        // Then
+        // throws exception
     }
 
     private Object[] invalidEmailAddresses(){
         return $("1234", "me", "1234@", "me@", "me@.com.my", "me@%*.com", "me..2002@gmail.com", "me.@gmail.com");
     }
 
+    private Object[] unsafeImageNames(){
+        return $("../../etc/passwd", "..", "/absolute.png", "dir\\..\\x.png", "a b?.png");
+    }
+
     private void assertThatAllUsersMatch(final List<User> users, final List<User> actualUsers) {
         assertThat("Expected all users returned from repository", actualUsers.size(), equalTo(users.size()));
         for (User user : users) {
@@ -246,14 +405,18 @@ public class UserControllerTest {
 
     private MultipartFile createMultipartFile() throws IOException {
         MultipartFile multipartFile = mock(MultipartFile.class);
-        when(multipartFile.getName()).thenReturn(Randoms.randomAlphanumeric("fileName_"));
-        when(multipartFile.getBytes()).thenReturn(Randoms.randomAlphanumeric("content").getBytes());
+        when(multipartFile.getName()).thenReturn("file");
+        when(multipartFile.getOriginalFilename()).thenReturn(Randoms.randomAlphanumeric("fileName_") + ".png");
+        byte[] bytes = Randoms.randomAlphanumeric("content").getBytes();
+        when(multipartFile.getBytes()).thenReturn(bytes);
+        when(multipartFile.getSize()).thenReturn((long) bytes.length);
         return multipartFile;
     }
 
     private User prepareUserInRepository() {
         User user = Users.randomWithId();
         when(userRepository.exists(user.getId())).thenReturn(true);
+        when(userRepository.delete(user.getId())).thenReturn(true);
         when(userRepository.findOne(user.getId())).thenReturn(user);
         when(userRepository.save(user)).thenReturn(user);
         when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
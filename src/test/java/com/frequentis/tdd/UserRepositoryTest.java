@@ -6,8 +6,15 @@
 package com.frequentis.tdd;
 
 import com.google.common.collect.Lists;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import junitparams.JUnitParamsRunner;
 import junitparams.Parameters;
 import org.junit.Before;
@@ -16,15 +23,24 @@ import org.junit.runner.RunWith;
 
 import com.frequentis.tdd.data.Randoms;
 import com.frequentis.tdd.data.Users;
+import com.frequentis.tdd.exceptions.TenantAccessDeniedException;
+import com.frequentis.tdd.exceptions.UserNotFoundException;
+import com.frequentis.tdd.tenant.TenantContext;
+import com.frequentis.tdd.tenant.TenantRegistry;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(JUnitParamsRunner.class)
 public class UserRepositoryTest {
+    private static final String TENANT = TenantContext.DEFAULT_TENANT;
+    private static final int CONCURRENT_LOOKUPS = 8;
+
     private UserRepository sut;
     private UserCrudRepository userCrudRepository;
 
@@ -46,6 +62,18 @@ public class UserRepositoryTest {
         assertThat("Expected user to match", actualUser.get(), equalTo(user));
     }
 
+    @Test
+    public void findByEmail_differentCaseAndWhitespace_returnUserFromCrudRepository() throws Exception {
+        // Given
+        User user = prepareUserInRepository();
+
+        // When
+        Optional<User> actualUser = sut.findByEmail(" " + user.getEmail().toUpperCase() + " ");
+
+        // Then
+        assertThat("Expected user to match", actualUser.get(), equalTo(user));
+    }
+
     @Test
     public void findByEmail_userNotPresentInRepository_returnOptionalEmpty() throws Exception {
         // Given
@@ -73,8 +101,8 @@ public class UserRepositoryTest {
     @Test
     public void findAll_usersInRepository_returnUsersFromRepository() throws Exception {
         // Given
-        Iterable<User> users = Lists.newArrayList(Users.randomWithId(), Users.randomWithId());
-        when(userCrudRepository.findAll()).thenReturn(users);
+        List<User> users = Lists.newArrayList(Users.randomWithId(), Users.randomWithId());
+        when(userCrudRepository.findByTenantId(TENANT)).thenReturn(users);
 
         // When
         List<User> actualUsers = sut.findAll();
@@ -100,7 +128,7 @@ public class UserRepositoryTest {
     public void exists_userPresent_returnTrue(final boolean exists) throws Exception {
         // Given
         User user = Users.randomWithId();
-        when(userCrudRepository.exists(user.getId())).thenReturn(exists);
+        when(userCrudRepository.countByTenantIdAndId(TENANT, user.getId())).thenReturn(exists ? 1L : 0L);
 
         // When
         boolean actualResult = sut.exists(user.getId());
@@ -118,14 +146,320 @@ public class UserRepositoryTest {
         sut.delete(id);
 
         // Then
-        verify(userCrudRepository).delete(id);
+        verify(userCrudRepository).hardDelete(TENANT, id);
+    }
+
+    @Test
+    public void delete_softDeleteEnabled_marksUserDeletedInRepository() throws Exception {
+        // Given
+        Long id = Randoms.randomLong();
+        sut = new UserRepository(userCrudRepository, 0, 1, true, false, new TenantRegistry(""));
+
+        // When
+        sut.delete(id);
+
+        // Then
+        verify(userCrudRepository).softDelete(TENANT, id);
+    }
+
+    @Test
+    @Parameters({"0, false", "1, true"})
+    public void delete_userId_returnsWhetherUserWasDeleted(final int deletedRows, final boolean deleted) throws Exception {
+        // Given
+        Long id = Randoms.randomLong();
+        when(userCrudRepository.hardDelete(TENANT, id)).thenReturn(deletedRows);
+
+        // When
+        boolean actualResult = sut.delete(id);
+
+        // Then
+        assertThat("Expected delete result to match", actualResult, equalTo(deleted));
+    }
+
+    @Test
+    public void deleteAll_ids_deletesUsersInOneStatement() throws Exception {
+        // Given
+        List<Long> ids = Lists.newArrayList(Randoms.randomLong(), Randoms.randomLong());
+        when(userCrudRepository.hardDeleteAll(TENANT, ids)).thenReturn(ids.size());
+
+        // When
+        int actualDeleted = sut.deleteAll(ids);
+
+        // Then
+        assertThat("Expected number of deleted users to match", actualDeleted, equalTo(ids.size()));
+    }
+
+    @Test
+    public void save_user_storesUserUnderCurrentTenant() throws Exception {
+        // Given
+        User user = Users.random();
+        String tenant = Randoms.randomAlphanumeric("tenant_");
+        TenantContext.set(tenant);
+
+        // When
+        try {
+            sut.save(user);
+        } finally {
+            TenantContext.clear();
+        }
+
+        // Then
+        assertThat("Expected user stored under current tenant", user.getTenantId(), equalTo(tenant));
+    }
+
+    @Test(expected = UserNotFoundException.class)
+    public void save_idNotPresentInCurrentTenant_throwsUserNotFoundException() throws Exception {
+        // Given
+        User user = Users.randomWithId();
+        TenantContext.set("other");
+
+        // When
+        try {
+            sut.save(user);
+        } finally {
+            TenantContext.clear();
+        }
+
+        // Then
+        // throws exception
+    }
+
+    @Test
+    public void findByEmail_userOfOtherTenant_returnOptionalEmpty() throws Exception {
+        // Given
+        User user = prepareUserInRepository();
+        TenantContext.set("other");
+
+        // When
+        Optional<User> actualUser;
+        try {
+            actualUser = sut.findByEmail(user.getEmail());
+        } finally {
+            TenantContext.clear();
+        }
+
+        // Then
+        assertThat("Expected user of other tenant not found", actualUser.isPresent(), equalTo(false));
+    }
+
+    @Test
+    public void findOne_readModelEnabled_servesSavedUserFromMemory() throws Exception {
+        // Given
+        sut = new UserRepository(userCrudRepository, 0, 1, false, true, new TenantRegistry(""));
+        User user = prepareUserInRepository();
+        when(userCrudRepository.findByTenantIdAndIdIn(TENANT, Collections.singleton(user.getId()))).thenReturn(Lists.newArrayList(user));
+        sut.save(user);
+
+        // When
+        User actualUser = sut.findOne(user.getId());
+
+        // Then
+        assertThat("Expected saved user to match", actualUser, equalTo(user));
+        verify(userCrudRepository, never()).findByTenantIdAndId(TENANT, user.getId());
+    }
+
+    @Test
+    public void findAll_readModelEnabledAndUserDeleted_omitsDeletedUser() throws Exception {
+        // Given
+        sut = new UserRepository(userCrudRepository, 0, 1, false, true, new TenantRegistry(""));
+        User user = prepareUserInRepository();
+        when(userCrudRepository.findByTenantId(TENANT)).thenReturn(Lists.newArrayList(user));
+        when(userCrudRepository.hardDelete(TENANT, user.getId())).thenReturn(1);
+        sut.findAll();
+
+        // When
+        sut.delete(user.getId());
+
+        // Then
+        assertThat("Expected no users left", sut.findAll().isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void findOne_readModelEnabledAndLoadedEntityChanged_servesLoadedState() throws Exception {
+        // Given
+        sut = new UserRepository(userCrudRepository, 0, 1, false, true, new TenantRegistry(""));
+        User user = prepareUserInRepository();
+        String email = user.getEmail();
+        when(userCrudRepository.findByTenantId(TENANT)).thenReturn(Lists.newArrayList(user));
+        sut.findAll();
+        user.setEmail(Users.randomEmail());
+
+        // When
+        User actualUser = sut.findOne(user.getId());
+
+        // Then
+        assertThat("Expected email as loaded", actualUser.getEmail(), equalTo(email));
+    }
+
+    @Test
+    public void findOne_readModelEnabledAndReturnedUserChanged_servesUnchangedUser() throws Exception {
+        // Given
+        sut = new UserRepository(userCrudRepository, 0, 1, false, true, new TenantRegistry(""));
+        User user = prepareUserInRepository();
+        String email = user.getEmail();
+        when(userCrudRepository.findByTenantId(TENANT)).thenReturn(Lists.newArrayList(new User(user)));
+        sut.findOne(user.getId()).setEmail(Users.randomEmail());
+
+        // When
+        User actualUser = sut.findOne(user.getId());
+
+        // Then
+        assertThat("Expected email unchanged", actualUser.getEmail(), equalTo(email));
+    }
+
+    @Test
+    public void findAll_readModelEnabledAndRefreshFailed_reloadsTenant() throws Exception {
+        // Given
+        sut = new UserRepository(userCrudRepository, 0, 1, false, true, new TenantRegistry(""));
+        User user = prepareUserInRepository();
+        when(userCrudRepository.findByTenantId(TENANT)).thenReturn(Collections.emptyList(), Lists.newArrayList(user));
+        when(userCrudRepository.findByTenantIdAndIdIn(TENANT, Collections.singleton(user.getId()))).thenThrow(new IllegalStateException());
+        sut.findAll();
+        try {
+            sut.save(user);
+        } catch (IllegalStateException e) {
+            // refresh failed after the write
+        }
+
+        // When
+        List<User> actualUsers = sut.findAll();
+
+        // Then
+        assertThat("Expected reloaded users", actualUsers, equalTo(Lists.newArrayList(user)));
+    }
+
+    @Test(expected = TenantAccessDeniedException.class)
+    public void findAll_readModelEnabledAndUnknownTenant_throwsTenantAccessDeniedException() throws Exception {
+        // Given
+        sut = new UserRepository(userCrudRepository, 0, 1, false, true, new TenantRegistry(""));
+        TenantContext.set("unknown");
+
+        // When
+        try {
+            sut.findAll();
+        } finally {
+            TenantContext.clear();
+        }
+
+        // Then
+        // throws exception
+    }
+
+    @Test
+    public void findOne_concurrentLookupsOfSameId_queryCrudRepositoryOnce() throws Exception {
+        // Given
+        User user = Users.randomWithId();
+        CountDownLatch release = new CountDownLatch(1);
+        when(userCrudRepository.findByTenantIdAndId(TENANT, user.getId())).thenAnswer(invocation -> {
+            release.await();
+            return user;
+        });
+
+        // When
+        List<FutureTask<User>> lookups = runConcurrently(() -> sut.findOne(user.getId()), release);
+
+        // Then
+        for (FutureTask<User> lookup : lookups) {
+            assertThat("Expected shared result", lookup.get(5, TimeUnit.SECONDS), equalTo(user));
+        }
+        verify(userCrudRepository, times(1)).findByTenantIdAndId(TENANT, user.getId());
+    }
+
+    @Test
+    public void findByEmail_concurrentLookupsOfSameEmail_queryCrudRepositoryOnce() throws Exception {
+        // Given
+        User user = Users.randomWithId();
+        String normalizedEmail = Emails.normalize(user.getEmail());
+        CountDownLatch release = new CountDownLatch(1);
+        when(userCrudRepository.findByTenantIdAndNormalizedEmail(TENANT, normalizedEmail)).thenAnswer(invocation -> {
+            release.await();
+            return user;
+        });
+
+        // When
+        List<FutureTask<Optional<User>>> lookups = runConcurrently(() -> sut.findByEmail(user.getEmail()), release);
+
+        // Then
+        for (FutureTask<Optional<User>> lookup : lookups) {
+            assertThat("Expected shared result", lookup.get(5, TimeUnit.SECONDS).get(), equalTo(user));
+        }
+        verify(userCrudRepository, times(1)).findByTenantIdAndNormalizedEmail(TENANT, normalizedEmail);
+    }
+
+    @Test
+    public void findOne_lookupAfterWrite_doesNotJoinEarlierLookup() throws Exception {
+        // Given
+        User user = prepareUserInRepository();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        when(userCrudRepository.findByTenantIdAndId(TENANT, user.getId())).thenAnswer(invocation -> {
+            if (calls.incrementAndGet() == 1) {
+                release.await();
+            }
+            return user;
+        });
+        FutureTask<User> earlier = new FutureTask<>(() -> sut.findOne(user.getId()));
+        awaitWaiting(Collections.singletonList(start(earlier)));
+        sut.save(user);
+
+        // When
+        sut.findOne(user.getId());
+
+        // Then
+        release.countDown();
+        earlier.get(5, TimeUnit.SECONDS);
+        verify(userCrudRepository, times(2)).findByTenantIdAndId(TENANT, user.getId());
+    }
+
+    @Test
+    public void findOne_sameUserTwice_returnsSeparateCopies() throws Exception {
+        // Given
+        User user = prepareUserInRepository();
+
+        // When
+        User first = sut.findOne(user.getId());
+        User second = sut.findOne(user.getId());
+
+        // Then
+        assertThat("Expected copies not to share state", first != second && first != user, equalTo(true));
+    }
+
+    /**
+     * Starts the lookups on separate threads and releases the crud repository
+     * only when all of them are waiting, so they overlap.
+     */
+    private static <T> List<FutureTask<T>> runConcurrently(final Callable<T> lookup, final CountDownLatch release) throws InterruptedException {
+        List<FutureTask<T>> lookups = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < CONCURRENT_LOOKUPS; i++) {
+            FutureTask<T> task = new FutureTask<>(lookup);
+            lookups.add(task);
+            threads.add(start(task));
+        }
+        awaitWaiting(threads);
+        release.countDown();
+        return lookups;
+    }
+
+    private static Thread start(final FutureTask<?> task) {
+        Thread thread = new Thread(task);
+        thread.start();
+        return thread;
+    }
+
+    private static void awaitWaiting(final List<Thread> threads) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline && threads.stream().anyMatch(thread -> thread.getState() != Thread.State.WAITING)) {
+            Thread.sleep(1);
+        }
     }
 
     private User prepareUserInRepository() {
         User user = Users.randomWithId();
-        when(userCrudRepository.findByEmail(user.getEmail())).thenReturn(user);
+        when(userCrudRepository.findByTenantIdAndNormalizedEmail(TENANT, Emails.normalize(user.getEmail()))).thenReturn(user);
         when(userCrudRepository.save(user)).thenReturn(user);
-        when(userCrudRepository.findOne(user.getId())).thenReturn(user);
+        when(userCrudRepository.findByTenantIdAndId(TENANT, user.getId())).thenReturn(user);
+        when(userCrudRepository.countByTenantIdAndId(TENANT, user.getId())).thenReturn(1L);
         return user;
     }
 }
\ No newline at end of file
@@ -0,0 +1,69 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.frequentis.tdd.Application;
+import com.frequentis.tdd.User;
+import com.frequentis.tdd.UserController;
+
+/**
+ * Measures create throughput through {@link UserController#create(User)} for
+ * distinct emails at 1, 2, 4, ... threads up to the number of cores, to show
+ * how far the email lock stripes let creates scale. Pass the number of
+ * creates per thread as the first argument.
+ */
+public final class ConcurrentCreateBenchmark {
+    private static final int DEFAULT_CREATES_PER_THREAD = 5_000;
+
+    public static void main(String[] args) throws Exception {
+        int createsPerThread = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CREATES_PER_THREAD;
+        ConfigurableApplicationContext context = SpringApplication.run(Application.class,
+                "--server.port=0",
+                "--spring.jpa.show-sql=false",
+                "--spring.datasource.url=jdbc:h2:mem:benchmark-create;DB_CLOSE_DELAY=-1");
+        try {
+            UserController controller = context.getBean(UserController.class);
+            int cores = Runtime.getRuntime().availableProcessors();
+            for (int threads = 1; threads <= cores; threads *= 2) {
+                run(controller, threads, createsPerThread);
+            }
+        } finally {
+            SpringApplication.exit(context);
+        }
+    }
+
+    private static void run(final UserController controller, final int threads, final int createsPerThread) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = new ArrayList<>(threads);
+            long start = System.nanoTime();
+            for (int thread = 0; thread < threads; thread++) {
+                int client = thread;
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < createsPerThread; i++) {
+                        controller.create(new User("First", "Last", "user" + threads + "." + client + "." + i + "@example.com"));
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+            double seconds = (System.nanoTime() - start) / 1_000_000_000d;
+
+            System.out.printf("%d threads: %.0f creates/s%n", threads, threads * createsPerThread / seconds);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.frequentis.tdd.Application;
+import com.frequentis.tdd.User;
+import com.frequentis.tdd.UserRepository;
+
+/**
+ * Compares the JPA and the plain JDBC implementation behind
+ * {@link UserRepository} for saves, lookups by id and lookups by email.
+ * Each implementation runs in its own context against its own in-memory
+ * database; pass the number of users as the first argument.
+ */
+public final class RepositoryBenchmark {
+    private static final int DEFAULT_USERS = 20_000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_USERS;
+        for (String implementation : new String[] {"jpa", "jdbc"}) {
+            ConfigurableApplicationContext context = SpringApplication.run(Application.class,
+                    "--server.port=0",
+                    "--spring.jpa.show-sql=false",
+                    "--spring.datasource.url=jdbc:h2:mem:benchmark-" + implementation + ";DB_CLOSE_DELAY=-1",
+                    "--com.frequentis.tdd.repository=" + implementation);
+            try {
+                run(implementation, context.getBean(UserRepository.class), users);
+            } finally {
+                SpringApplication.exit(context);
+            }
+        }
+    }
+
+    private static void run(final String implementation, final UserRepository repository, final int users) {
+        for (int round = 0; round < ROUNDS; round++) {
+            List<Long> ids = new ArrayList<>(users);
+            long start = System.nanoTime();
+            for (int i = 0; i < users; i++) {
+                ids.add(repository.save(new User("First", "Last", email(round, i))).getId());
+            }
+            long saved = System.nanoTime();
+            for (Long id : ids) {
+                repository.findOne(id);
+            }
+            long foundById = System.nanoTime();
+            for (int i = 0; i < users; i++) {
+                repository.findByEmail(email(round, i));
+            }
+            long foundByEmail = System.nanoTime();
+
+            System.out.printf("%s round %d: save %.2f us, findOne %.2f us, findByEmail %.2f us per user%n",
+                              implementation, round,
+                              perUser(saved - start, users), perUser(foundById - saved, users), perUser(foundByEmail - foundById, users));
+        }
+    }
+
+    private static String email(final int round, final int i) {
+        return "user" + round + "." + i + "@example.com";
+    }
+
+    private static double perUser(final long nanos, final int users) {
+        return nanos / 1000.0 / users;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.benchmark;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.frequentis.tdd.Application;
+
+/**
+ * Measures time-to-first-request: from JVM start until GET /user/all answers.
+ * Startup cost is dominated by class loading, so run each measurement in a
+ * fresh JVM, e.g. with and without {@code --spring.profiles.active=fast-startup}
+ * as program arguments.
+ */
+public final class StartupBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        String[] arguments = new String[args.length + 1];
+        System.arraycopy(args, 0, arguments, 0, args.length);
+        arguments[args.length] = "--server.port=0";
+
+        ConfigurableApplicationContext context = SpringApplication.run(Application.class, arguments);
+        long contextReady = uptimeMillis();
+        int port = ((EmbeddedWebApplicationContext) context).getEmbeddedServletContainer().getPort();
+
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/user/all").openConnection();
+        int status = connection.getResponseCode();
+        long firstResponse = uptimeMillis();
+
+        System.out.printf("context ready: %d ms, first request answered (%d): %d ms%n", contextReady, status, firstResponse);
+        SpringApplication.exit(context);
+    }
+
+    private static long uptimeMillis() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+}
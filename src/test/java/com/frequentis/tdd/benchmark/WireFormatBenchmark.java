@@ -0,0 +1,67 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.frequentis.tdd.User;
+import com.frequentis.tdd.data.Users;
+
+/**
+ * Compares payload size and (de)serialization throughput of JSON and Smile
+ * for a list of 10k users. Run from the IDE or with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.frequentis.tdd.benchmark.WireFormatBenchmark}.
+ */
+public final class WireFormatBenchmark {
+    private static final int USERS = 10_000;
+    private static final int WARM_UP_ROUNDS = 50;
+    private static final int MEASURED_ROUNDS = 200;
+    private static final TypeReference<List<User>> USER_LIST = new TypeReference<List<User>>() { };
+
+    public static void main(String[] args) throws IOException {
+        List<User> users = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            users.add(Users.randomWithId());
+        }
+
+        run("json ", new ObjectMapper(), users);
+        run("smile", new ObjectMapper(new SmileFactory()), users);
+    }
+
+    private static void run(final String name, final ObjectMapper mapper, final List<User> users) throws IOException {
+        byte[] payload = mapper.writeValueAsBytes(users);
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            mapper.readValue(mapper.writeValueAsBytes(users), USER_LIST);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            payload = mapper.writeValueAsBytes(users);
+        }
+        long writeNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            mapper.readValue(payload, USER_LIST);
+        }
+        long readNanos = System.nanoTime() - start;
+
+        System.out.printf("%s: %,d bytes, write %,.0f users/s, read %,.0f users/s%n",
+                          name,
+                          payload.length,
+                          throughput(writeNanos),
+                          throughput(readNanos));
+    }
+
+    private static double throughput(final long nanos) {
+        return (double) USERS * MEASURED_ROUNDS / (nanos / 1_000_000_000d);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.caching;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import com.frequentis.tdd.UserRepository;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ResponseCacheInterceptorTest {
+    private static final String BODY = "{\"id\":1}";
+    private static final String JSON = "application/json;charset=UTF-8";
+
+    private ResponseCacheInterceptor sut;
+    private UserRepository userRepository;
+
+    @Before
+    public void setUp() {
+        userRepository = mock(UserRepository.class);
+        sut = new ResponseCacheInterceptor(userRepository, 100);
+    }
+
+    @Test
+    public void preHandle_responseCachedForCurrentVersion_writesCachedBody() throws Exception {
+        // Given
+        when(userRepository.version()).thenReturn(1L);
+        handle();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // When
+        boolean proceed = sut.preHandle(getUser(), response, null);
+
+        // Then
+        assertThat("Expected handler to be skipped", proceed, equalTo(false));
+        assertThat("Expected cached body", response.getContentAsString(), equalTo(BODY));
+        assertThat("Expected cached content type", response.getContentType(), equalTo(JSON));
+    }
+
+    @Test
+    public void preHandle_versionChangedSinceCaching_proceedsToHandler() throws Exception {
+        // Given
+        when(userRepository.version()).thenReturn(1L);
+        handle();
+        when(userRepository.version()).thenReturn(2L);
+
+        // When
+        boolean proceed = sut.preHandle(getUser(), new MockHttpServletResponse(), null);
+
+        // Then
+        assertThat("Expected handler to run", proceed, equalTo(true));
+    }
+
+    @Test
+    public void preHandle_writeDuringHandling_doesNotServeCachedBody() throws Exception {
+        // Given
+        when(userRepository.version()).thenReturn(1L);
+        MockHttpServletRequest request = getUser();
+        ContentCachingResponseWrapper response = new ContentCachingResponseWrapper(new MockHttpServletResponse());
+        sut.preHandle(request, response, null);
+        when(userRepository.version()).thenReturn(2L);
+        writeBody(response);
+        sut.afterCompletion(request, response, null, null);
+
+        // When
+        boolean proceed = sut.preHandle(getUser(), new MockHttpServletResponse(), null);
+
+        // Then
+        assertThat("Expected handler to run", proceed, equalTo(true));
+    }
+
+    private void handle() throws Exception {
+        MockHttpServletRequest request = getUser();
+        ContentCachingResponseWrapper response = new ContentCachingResponseWrapper(new MockHttpServletResponse());
+        sut.preHandle(request, response, null);
+        writeBody(response);
+        sut.afterCompletion(request, response, null, null);
+    }
+
+    private static void writeBody(final ContentCachingResponseWrapper response) throws Exception {
+        response.setContentType(JSON);
+        response.getOutputStream().write(BODY.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static MockHttpServletRequest getUser() {
+        return new MockHttpServletRequest("GET", "/user/1");
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.coalescing;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class BatchLoaderTest {
+    private final List<Collection<Long>> batches = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void load_concurrentDifferentKeys_mergedIntoOneBatch() throws Exception {
+        // Given
+        BatchLoader<Long, String> sut = new BatchLoader<>(this::loadAll, TimeUnit.MILLISECONDS.toMicros(200), 100);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+
+        // When
+        List<Future<String>> results = new ArrayList<>();
+        for (long id = 1; id <= 3; id++) {
+            final long key = id;
+            results.add(executor.submit(() -> sut.load(key)));
+        }
+
+        // Then
+        for (int i = 0; i < results.size(); i++) {
+            assertThat("Expected value of own key", results.get(i).get(1, TimeUnit.SECONDS), equalTo("user" + (i + 1)));
+        }
+        assertThat("Expected a single batch", batches.size(), equalTo(1));
+        executor.shutdown();
+    }
+
+    @Test
+    public void load_batchFull_runsWithoutWaitingForWindow() {
+        // Given
+        BatchLoader<Long, String> sut = new BatchLoader<>(this::loadAll, TimeUnit.SECONDS.toMicros(10), 1);
+
+        // When
+        String actual = sut.load(7L);
+
+        // Then
+        assertThat("Expected value of own key", actual, equalTo("user7"));
+    }
+
+    @Test(expected = AssertionError.class)
+    public void load_batchFunctionThrowsError_rethrowsError() {
+        // Given
+        BatchLoader<Long, String> sut = new BatchLoader<>(keys -> {
+            throw new AssertionError("broken");
+        }, 0, 1);
+
+        // When
+        sut.load(7L);
+    }
+
+    @Test
+    public void load_batchFunctionThrowsError_completesOtherCallers() throws Exception {
+        // Given
+        BatchLoader<Long, String> sut = new BatchLoader<>(keys -> {
+            throw new AssertionError("broken");
+        }, TimeUnit.MILLISECONDS.toMicros(200), 100);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        List<Future<String>> results = new ArrayList<>();
+        for (long id = 1; id <= 2; id++) {
+            final long key = id;
+            results.add(executor.submit(() -> sut.load(key)));
+        }
+
+        // When
+        int failed = 0;
+        for (Future<String> result : results) {
+            try {
+                result.get(1, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                failed++;
+            }
+        }
+
+        // Then
+        assertThat("Expected every caller to see the failure", failed, equalTo(2));
+        executor.shutdown();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void load_batchFunctionReturnsNull_throwsIllegalState() {
+        // Given
+        BatchLoader<Long, String> sut = new BatchLoader<>(keys -> null, 0, 1);
+
+        // When
+        sut.load(7L);
+    }
+
+    private Map<Long, String> loadAll(final Collection<Long> keys) {
+        batches.add(new ArrayList<>(keys));
+        Map<Long, String> values = new HashMap<>();
+        keys.forEach(key -> values.put(key, "user" + key));
+        return values;
+    }
+}
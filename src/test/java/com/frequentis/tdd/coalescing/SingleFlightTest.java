@@ -0,0 +1,72 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.coalescing;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class SingleFlightTest {
+    private final SingleFlight<String, String> sut = new SingleFlight<>();
+
+    @Test
+    public void execute_concurrentCallsForSameKey_loadOnce() throws Exception {
+        // Given
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoader = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        // When
+        Future<String> first = executor.submit(() -> sut.execute("key", () -> {
+            loads.incrementAndGet();
+            loaderStarted.countDown();
+            await(releaseLoader);
+            return "value";
+        }));
+        loaderStarted.await();
+        Future<String> second = executor.submit(() -> sut.execute("key", () -> {
+            loads.incrementAndGet();
+            return "other";
+        }));
+        Thread.sleep(50);
+        releaseLoader.countDown();
+
+        // Then
+        assertThat("Expected first caller to get loaded value", first.get(1, TimeUnit.SECONDS), equalTo("value"));
+        assertThat("Expected second caller to share loaded value", second.get(1, TimeUnit.SECONDS), equalTo("value"));
+        assertThat("Expected a single load", loads.get(), equalTo(1));
+        executor.shutdown();
+    }
+
+    @Test
+    public void execute_sequentialCalls_loadEachTime() {
+        // Given
+        AtomicInteger loads = new AtomicInteger();
+
+        // When
+        sut.execute("key", () -> "v" + loads.incrementAndGet());
+        String actual = sut.execute("key", () -> "v" + loads.incrementAndGet());
+
+        // Then
+        assertThat("Expected completed loads not to be reused", actual, equalTo("v2"));
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
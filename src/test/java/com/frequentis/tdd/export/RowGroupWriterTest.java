@@ -0,0 +1,61 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.export;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class RowGroupWriterTest {
+
+    @Test
+    public void writeTo_rows_writesColumnsOneAfterAnother() throws IOException {
+        // Given
+        RowGroupWriter sut = new RowGroupWriter();
+        sut.add(1L, "default", "a@b.com", "Ion", "Popescu");
+        sut.add(2L, "default", "c@d.com", "Maria", null);
+
+        // When
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sut.writeTo(bytes);
+
+        // Then
+        DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertThat("Expected row count", in.readInt(), equalTo(2));
+        assertThat("Expected first id", in.readLong(), equalTo(1L));
+        assertThat("Expected second id", in.readLong(), equalTo(2L));
+        in.readBoolean();
+        in.readUTF();
+        in.readBoolean();
+        in.readUTF();
+        assertThat("Expected first email present", in.readBoolean(), equalTo(true));
+        assertThat("Expected first email", in.readUTF(), equalTo("a@b.com"));
+        assertThat("Expected second email present", in.readBoolean(), equalTo(true));
+        assertThat("Expected second email", in.readUTF(), equalTo("c@d.com"));
+        in.readBoolean();
+        in.readUTF();
+        in.readBoolean();
+        in.readUTF();
+        in.readBoolean();
+        in.readUTF();
+        assertThat("Expected missing last name marked absent", in.readBoolean(), equalTo(false));
+    }
+
+    @Test
+    public void escapeCsv_valueWithSeparator_isQuoted() {
+        // When
+        String actual = UserExporter.escapeCsv("Popescu, \"Ion\"");
+
+        // Then
+        assertThat("Expected value to be quoted", actual, equalTo("\"Popescu, \"\"Ion\"\"\""));
+    }
+}
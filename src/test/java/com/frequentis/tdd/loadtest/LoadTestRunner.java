@@ -0,0 +1,246 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.io.ByteStreams;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import com.frequentis.tdd.Application;
+import com.frequentis.tdd.User;
+import com.frequentis.tdd.data.Users;
+
+/**
+ * Boots the application on a random port, seeds users and drives a weighted
+ * mix of user API calls from concurrent clients for a fixed duration. Writes
+ * throughput, latency percentiles and error rates per operation as JSON.
+ * <p>
+ * Run with {@code mvn -P load-test verify}; tune with the system properties
+ * {@code loadtest.users}, {@code loadtest.clients}, {@code loadtest.durationSeconds},
+ * {@code loadtest.mix} (e.g. {@code get=50,getAll=5,create=15,update=15,delete=10,uploadImage=5})
+ * and {@code loadtest.output}. Rate limits are lifted unless
+ * {@code loadtest.keepThrottling=true}, since all clients share one address.
+ * Uploads replace a fixed set of images, so the run measures upload
+ * throughput rather than running into the storage quota.
+ */
+public final class LoadTestRunner {
+    private static final int SEEDED_USERS = Integer.getInteger("loadtest.users", 1000);
+    private static final int CLIENTS = Integer.getInteger("loadtest.clients", 32);
+    private static final int DURATION_SECONDS = Integer.getInteger("loadtest.durationSeconds", 60);
+    private static final String MIX = System.getProperty("loadtest.mix", "get=50,getAll=5,create=15,update=15,delete=10,uploadImage=5");
+    private static final String OUTPUT = System.getProperty("loadtest.output", "target/load-test-result.json");
+    private static final boolean KEEP_THROTTLING = Boolean.getBoolean("loadtest.keepThrottling");
+    private static final int IMAGE_NAMES = 16;
+
+    private final String baseUrl;
+    private final RestTemplate restTemplate = new RestTemplate();
+    private final List<Long> userIds = new ArrayList<>();
+    private final Operation[] weightedOperations;
+    private final byte[] image;
+
+    private LoadTestRunner(final String baseUrl, final Operation[] weightedOperations, final byte[] image) {
+        this.baseUrl = baseUrl;
+        this.weightedOperations = weightedOperations;
+        this.image = image;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path storage = Files.createTempDirectory("tdd-load-test");
+        List<String> arguments = new ArrayList<>();
+        arguments.add("--server.port=0");
+        arguments.add("--spring.jpa.show-sql=false");
+        arguments.add("--com.frequentis.tdd.filePath=" + storage);
+        if (!KEEP_THROTTLING) {
+            for (String endpointClass : new String[]{"read", "write", "upload"}) {
+                arguments.add("--com.frequentis.tdd.throttling." + endpointClass + ".perSecond=1000000000");
+                arguments.add("--com.frequentis.tdd.throttling." + endpointClass + ".burst=1000000000");
+            }
+            arguments.add("--com.frequentis.tdd.throttling.maxConcurrentRequests=" + Math.max(64, CLIENTS * 2));
+        }
+
+        ConfigurableApplicationContext context = SpringApplication.run(Application.class, arguments.toArray(new String[arguments.size()]));
+        try {
+            int port = ((EmbeddedWebApplicationContext) context).getEmbeddedServletContainer().getPort();
+            LoadTestRunner runner = new LoadTestRunner("http://localhost:" + port + "/user/", parseMix(MIX), loadImage());
+            runner.seed();
+            Map<String, Object> report = runner.run();
+            File output = new File(OUTPUT);
+            output.getAbsoluteFile().getParentFile().mkdirs();
+            new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(output, report);
+            System.out.println("Load test report written to " + output.getAbsolutePath());
+        } finally {
+            SpringApplication.exit(context);
+        }
+    }
+
+    private void seed() {
+        for (int i = 0; i < SEEDED_USERS; i++) {
+            User user = restTemplate.postForObject(baseUrl, Users.random(), User.class);
+            userIds.add(user.getId());
+        }
+    }
+
+    private Map<String, Object> run() throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(DURATION_SECONDS);
+        List<Future<Map<Operation, OperationStats>>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < CLIENTS; i++) {
+            results.add(clients.submit(() -> runClient(deadline)));
+        }
+
+        Map<Operation, OperationStats> totals = new EnumMap<>(Operation.class);
+        for (Future<Map<Operation, OperationStats>> result : results) {
+            result.get().forEach((operation, stats) -> totals.computeIfAbsent(operation, key -> new OperationStats()).merge(stats));
+        }
+        double durationSeconds = (System.nanoTime() - start) / 1_000_000_000d;
+        clients.shutdown();
+
+        OperationStats overall = new OperationStats();
+        Map<String, Object> operations = new LinkedHashMap<>();
+        totals.forEach((operation, stats) -> {
+            operations.put(operation.key(), stats.toReport(durationSeconds));
+            overall.merge(stats);
+        });
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("finishedAt", Instant.now().toString());
+        report.put("durationSeconds", durationSeconds);
+        report.put("clients", CLIENTS);
+        report.put("seededUsers", SEEDED_USERS);
+        report.put("mix", MIX);
+        report.put("total", overall.toReport(durationSeconds));
+        report.put("operations", operations);
+        return report;
+    }
+
+    private Map<Operation, OperationStats> runClient(final long deadline) {
+        Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            Operation operation = weightedOperations[random.nextInt(weightedOperations.length)];
+            long start = System.nanoTime();
+            int status = execute(operation);
+            long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+            stats.computeIfAbsent(operation, key -> new OperationStats()).record(latencyMicros, status);
+        }
+        return stats;
+    }
+
+    private int execute(final Operation operation) {
+        try {
+            return send(operation).getStatusCode().value();
+        } catch (HttpStatusCodeException e) {
+            return e.getStatusCode().value();
+        } catch (ResourceAccessException e) {
+            return 0;
+        }
+    }
+
+    private ResponseEntity<?> send(final Operation operation) {
+        switch (operation) {
+            case CREATE:
+                ResponseEntity<User> created = restTemplate.postForEntity(baseUrl, Users.random(), User.class);
+                addUserId(created.getBody().getId());
+                return created;
+            case GET:
+                return restTemplate.getForEntity(baseUrl + randomUserId(), String.class);
+            case UPDATE:
+                User user = Users.random();
+                User update = new User(randomUserId(), user.getFirstName(), user.getLastName(), user.getEmail());
+                return restTemplate.exchange(baseUrl, HttpMethod.PUT, new HttpEntity<>(update), String.class);
+            case DELETE:
+                Long id = takeUserId();
+                return restTemplate.exchange(baseUrl + id, HttpMethod.DELETE, null, String.class);
+            case GET_ALL:
+                return restTemplate.getForEntity(baseUrl + "all", String.class);
+            case UPLOAD_IMAGE:
+                return restTemplate.postForEntity(baseUrl + "uploadImage", imageUpload(), String.class);
+            default:
+                throw new IllegalStateException("Unsupported operation " + operation);
+        }
+    }
+
+    private HttpEntity<MultiValueMap<String, Object>> imageUpload() {
+        MultiValueMap<String, Object> form = new LinkedMultiValueMap<>();
+        form.add("file", new ByteArrayResource(image) {
+            @Override
+            public String getFilename() {
+                return "image_" + ThreadLocalRandom.current().nextInt(IMAGE_NAMES) + ".png";
+            }
+        });
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        return new HttpEntity<>(form, headers);
+    }
+
+    private synchronized void addUserId(final Long id) {
+        userIds.add(id);
+    }
+
+    private synchronized Long randomUserId() {
+        return userIds.isEmpty() ? 0L : userIds.get(ThreadLocalRandom.current().nextInt(userIds.size()));
+    }
+
+    private synchronized Long takeUserId() {
+        if (userIds.isEmpty()) {
+            return 0L;
+        }
+        int index = ThreadLocalRandom.current().nextInt(userIds.size());
+        Long id = userIds.get(index);
+        userIds.set(index, userIds.get(userIds.size() - 1));
+        userIds.remove(userIds.size() - 1);
+        return id;
+    }
+
+    private static Operation[] parseMix(final String mix) {
+        List<Operation> operations = new ArrayList<>();
+        for (String entry : mix.split(",")) {
+            String[] weight = entry.trim().split("=");
+            Operation operation = Operation.ofKey(weight[0].trim());
+            for (int i = 0; i < Integer.parseInt(weight[1].trim()); i++) {
+                operations.add(operation);
+            }
+        }
+        return operations.toArray(new Operation[operations.size()]);
+    }
+
+    private static byte[] loadImage() throws IOException {
+        try (InputStream resourceStream = LoadTestRunner.class.getResourceAsStream("/profile.png")) {
+            return ByteStreams.toByteArray(resourceStream);
+        }
+    }
+}
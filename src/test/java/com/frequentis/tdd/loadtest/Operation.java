@@ -0,0 +1,34 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.loadtest;
+
+public enum Operation {
+    CREATE("create"),
+    GET("get"),
+    UPDATE("update"),
+    DELETE("delete"),
+    GET_ALL("getAll"),
+    UPLOAD_IMAGE("uploadImage");
+
+    private final String key;
+
+    Operation(final String key) {
+        this.key = key;
+    }
+
+    public String key() {
+        return key;
+    }
+
+    public static Operation ofKey(final String key) {
+        for (Operation operation : values()) {
+            if (operation.key.equals(key)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation " + key);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.loadtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Latencies and status codes of one operation, recorded by a single client
+ * thread and merged into the totals after the run.
+ */
+public class OperationStats {
+    private long[] latenciesMicros = new long[1024];
+    private int count;
+    private long errors;
+    private final Map<Integer, Long> statusCodes = new TreeMap<>();
+
+    public void record(final long latencyMicros, final int statusCode) {
+        if (count == latenciesMicros.length) {
+            latenciesMicros = Arrays.copyOf(latenciesMicros, count * 2);
+        }
+        latenciesMicros[count++] = latencyMicros;
+        statusCodes.merge(statusCode, 1L, Long::sum);
+        if (statusCode < 200 || statusCode >= 400) {
+            errors++;
+        }
+    }
+
+    public void merge(final OperationStats other) {
+        for (int i = 0; i < other.count; i++) {
+            if (count == latenciesMicros.length) {
+                latenciesMicros = Arrays.copyOf(latenciesMicros, count * 2);
+            }
+            latenciesMicros[count++] = other.latenciesMicros[i];
+        }
+        errors += other.errors;
+        other.statusCodes.forEach((status, occurrences) -> statusCodes.merge(status, occurrences, Long::sum));
+    }
+
+    public Map<String, Object> toReport(final double durationSeconds) {
+        long[] sorted = Arrays.copyOf(latenciesMicros, count);
+        Arrays.sort(sorted);
+
+        Map<String, Object> latencyMillis = new LinkedHashMap<>();
+        latencyMillis.put("p50", percentileMillis(sorted, 0.50));
+        latencyMillis.put("p90", percentileMillis(sorted, 0.90));
+        latencyMillis.put("p99", percentileMillis(sorted, 0.99));
+        latencyMillis.put("p999", percentileMillis(sorted, 0.999));
+        latencyMillis.put("max", count == 0 ? 0 : sorted[count - 1] / 1000d);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("requests", count);
+        report.put("errors", errors);
+        report.put("errorRate", count == 0 ? 0 : (double) errors / count);
+        report.put("throughputPerSecond", count / durationSeconds);
+        report.put("latencyMillis", latencyMillis);
+        report.put("statusCodes", statusCodes);
+        return report;
+    }
+
+    private static double percentileMillis(final long[] sorted, final double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1000d;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.maintenance;
+
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+
+public class EmailNormalizationBackfillTest {
+    private static final int BATCH_SIZE = 2;
+    private static final int PARALLELISM = 2;
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private EmailNormalizationBackfill sut;
+
+    @Before
+    public void setUp() {
+        database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2)
+                                                .generateUniqueName(true)
+                                                .addScript("schema.sql")
+                                                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        sut = new EmailNormalizationBackfill(jdbcTemplate, new DataSourceTransactionManager(database), BATCH_SIZE, PARALLELISM);
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void run_rowsWithoutNormalizedEmail_normalizesAllBatches() throws Exception {
+        // Given
+        insert("tenant", "Ann@Example.com");
+        insert("tenant", " BOB@example.com");
+        insert("tenant", "carl@example.com");
+        insert("other", "ANN@example.com");
+        insert("other", "Dora@Example.COM");
+
+        // When
+        EmailBackfillResult result = sut.run();
+
+        // Then
+        assertThat("Expected all rows updated", result.getUpdated(), equalTo(5L));
+        assertThat("Expected normalized emails", normalizedEmails(),
+                   contains("ann@example.com", "bob@example.com", "carl@example.com", "ann@example.com", "dora@example.com"));
+    }
+
+    @Test
+    public void run_twoRowsWithSameNormalizedEmail_skipsOnlyTheClashingRow() throws Exception {
+        // Given
+        insert("tenant", "ann@example.com");
+        insert("tenant", "ANN@example.com");
+
+        // When
+        EmailBackfillResult result = sut.run();
+
+        // Then
+        assertThat("Expected first row updated", result.getUpdated(), equalTo(1L));
+        assertThat("Expected clash reported", result.getConflicts(), equalTo(1L));
+    }
+
+    @Test
+    public void run_calledTwice_secondRunUpdatesNothing() throws Exception {
+        // Given
+        insert("tenant", "Ann@Example.com");
+        sut.run();
+
+        // When
+        EmailBackfillResult result = sut.run();
+
+        // Then
+        assertThat("Expected nothing left to update", result.getUpdated(), equalTo(0L));
+    }
+
+    private void insert(final String tenant, final String email) {
+        jdbcTemplate.update("INSERT INTO users (tenant_id, email) VALUES (?, ?)", tenant, email);
+    }
+
+    private List<String> normalizedEmails() {
+        return jdbcTemplate.queryForList("SELECT email_normalized FROM users ORDER BY id", String.class);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.readmodel;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import com.frequentis.tdd.User;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class UserSnapshotTest {
+    private static final int MANY_USERS = 5000;
+
+    @Test
+    public void findOne_userPut_returnsUser() throws Exception {
+        // Given
+        User user = user(1L, "Ann@Example.com");
+
+        // When
+        UserSnapshot snapshot = UserSnapshot.of(listOf(user));
+
+        // Then
+        assertThat("Expected user by id", snapshot.findOne(1L), equalTo(user));
+        assertThat("Expected user by normalized email", snapshot.findByEmail("ann@example.com"), equalTo(user));
+    }
+
+    @Test
+    public void put_emailChanged_oldEmailNoLongerFound() throws Exception {
+        // Given
+        UserSnapshot snapshot = UserSnapshot.of(listOf(user(1L, "old@example.com")));
+        UserSnapshot.Editor editor = snapshot.edit();
+        User changed = user(1L, "new@example.com");
+
+        // When
+        editor.put(changed);
+        UserSnapshot updated = editor.publish();
+
+        // Then
+        assertThat("Expected old email gone", updated.findByEmail("old@example.com"), nullValue());
+        assertThat("Expected new email found", updated.findByEmail("new@example.com"), equalTo(changed));
+        assertThat("Expected user replaced, not added", updated.size(), equalTo(1));
+    }
+
+    @Test
+    public void remove_userInTheMiddle_keepsOtherUsersReachable() throws Exception {
+        // Given
+        List<User> users = manyUsers();
+        UserSnapshot snapshot = UserSnapshot.of(users);
+        UserSnapshot.Editor editor = snapshot.edit();
+
+        // When
+        for (int i = 0; i < MANY_USERS; i += 2) {
+            editor.remove(users.get(i).getId());
+        }
+        UserSnapshot updated = editor.publish();
+
+        // Then
+        for (int i = 0; i < MANY_USERS; i++) {
+            User expected = i % 2 == 0 ? null : users.get(i);
+            assertThat("Expected lookup by id of user " + i, updated.findOne(users.get(i).getId()), equalTo(expected));
+            assertThat("Expected lookup by email of user " + i, updated.findByEmail(users.get(i).getEmail()), equalTo(expected));
+        }
+        assertThat("Expected half of the users left", updated.all().size(), equalTo(MANY_USERS / 2));
+    }
+
+    @Test
+    public void publish_afterChanges_previousSnapshotUnchanged() throws Exception {
+        // Given
+        List<User> users = manyUsers();
+        UserSnapshot snapshot = UserSnapshot.of(users);
+        UserSnapshot.Editor editor = snapshot.edit();
+
+        // When
+        editor.remove(users.get(0).getId());
+        editor.put(user(MANY_USERS + 1L, "added@example.com"));
+        editor.publish();
+
+        // Then
+        assertThat("Expected removed user still in old snapshot", snapshot.findOne(users.get(0).getId()), equalTo(users.get(0)));
+        assertThat("Expected added user not in old snapshot", snapshot.findOne(MANY_USERS + 1L), nullValue());
+        assertThat("Expected old snapshot to list all original users", snapshot.all(), containsInAnyOrder(users.toArray()));
+    }
+
+    private static List<User> manyUsers() {
+        List<User> users = new ArrayList<>();
+        for (long id = 1; id <= MANY_USERS; id++) {
+            users.add(user(id, "user" + id + "@example.com"));
+        }
+        return users;
+    }
+
+    private static List<User> listOf(final User user) {
+        List<User> users = new ArrayList<>();
+        users.add(user);
+        return users;
+    }
+
+    private static User user(final Long id, final String email) {
+        return new User(id, "firstName", "lastName", email);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.startup;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class SchemaInitializerTest {
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private SchemaInitializer sut;
+
+    @Before
+    public void setUp() {
+        database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2)
+                                                .generateUniqueName(true)
+                                                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        sut = new SchemaInitializer(database, true);
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void initialize_tableWithoutNormalizedEmail_migratesTable() throws Exception {
+        // Given
+        jdbcTemplate.execute("CREATE TABLE users (id int(11) NOT NULL AUTO_INCREMENT, tenant_id VARCHAR(64) DEFAULT 'default' NOT NULL,"
+                             + " email varchar(200), first_name VARCHAR(100), last_name VARCHAR(100) DEFAULT NULL,"
+                             + " deleted BOOLEAN DEFAULT FALSE NOT NULL, live_email VARCHAR(200) AS CASEWHEN(deleted, NULL, email),"
+                             + " PRIMARY KEY (id))");
+        jdbcTemplate.update("INSERT INTO users (tenant_id, email) VALUES ('tenant', 'Ann@Example.com')");
+
+        // When
+        sut.initialize();
+
+        // Then
+        jdbcTemplate.update("INSERT INTO users (tenant_id, email, email_normalized) VALUES ('tenant', 'bob@example.com', 'bob@example.com')");
+        assertThat("Expected row without normalized email found by its normalized form",
+                   jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users WHERE tenant_id = 'tenant' AND lookup_email = 'ann@example.com'", Long.class),
+                   equalTo(1L));
+    }
+
+    @Test
+    public void initialize_migratedTable_keepsRowsAndUniqueEmail() throws Exception {
+        // Given
+        sut.initialize();
+        jdbcTemplate.update("INSERT INTO users (tenant_id, email, email_normalized) VALUES ('tenant', 'Ann@Example.com', 'ann@example.com')");
+
+        // When
+        sut.initialize();
+
+        // Then
+        assertThat("Expected row kept", jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Long.class), equalTo(1L));
+        assertThat("Expected unique email kept",
+                   jdbcTemplate.queryForObject("SELECT unique_email FROM users", String.class), equalTo("ann@example.com"));
+    }
+
+    @Test
+    public void initialize_noTable_createsTable() throws Exception {
+        // When
+        sut.initialize();
+
+        // Then
+        assertThat("Expected empty users table", jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Long.class), equalTo(0L));
+    }
+}
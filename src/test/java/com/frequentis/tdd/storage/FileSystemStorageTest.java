@@ -0,0 +1,76 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.storage;
+
+import java.io.File;
+import java.nio.file.Files;
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import com.frequentis.tdd.exceptions.InvalidFileNameException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+@RunWith(JUnitParamsRunner.class)
+public class FileSystemStorageTest {
+    private static final byte[] CONTENT = {1, 2, 3};
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File root;
+    private FileSystemStorage sut;
+
+    @Before
+    public void setUp() throws Exception {
+        root = temporaryFolder.newFolder("storage");
+        sut = new FileSystemStorage(root.getPath());
+    }
+
+    @Test
+    public void store_plainName_storesInsideRoot() throws Exception {
+        // When
+        sut.store("profile.png", CONTENT);
+
+        // Then
+        assertThat("Expected stored bytes", sut.get("profile.png").get(), equalTo(CONTENT));
+    }
+
+    @Test(expected = InvalidFileNameException.class)
+    @Parameters({"../outside.png", "a/../../outside.png", "."})
+    public void store_nameOutsideRoot_throwsInvalidFileName(final String name) throws Exception {
+        // When
+        sut.store(name, CONTENT);
+    }
+
+    @Test
+    public void delete_nameOutsideRoot_keepsFile() throws Exception {
+        // Given
+        File outside = temporaryFolder.newFile("outside.png");
+
+        // When
+        try {
+            sut.delete("../outside.png");
+        } catch (InvalidFileNameException e) {
+            // expected
+        }
+
+        // Then
+        assertThat("Expected file outside root to survive", Files.exists(outside.toPath()), equalTo(true));
+    }
+
+    @Test(expected = InvalidFileNameException.class)
+    public void get_absoluteName_throwsInvalidFileName() throws Exception {
+        // When
+        sut.get(new File(temporaryFolder.getRoot(), "outside.png").getAbsolutePath());
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.springframework.util.DigestUtils;
+
+/**
+ * In-process stand-in for an object store in tests. Buckets are created on
+ * first use; multipart uploads follow the S3 contract closely
+ * enough to catch misordered or missing parts.
+ */
+public class InMemoryObjectStoreClient implements ObjectStoreClient {
+    private final ConcurrentMap<String, ConcurrentMap<String, StoredObject>> buckets = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ConcurrentMap<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean bucketExists(final String bucket) {
+        return true;
+    }
+
+    @Override
+    public void putObject(final String bucket, final String key, final byte[] bytes) {
+        bucket(bucket).put(key, new StoredObject(bytes.clone(), System.currentTimeMillis()));
+    }
+
+    @Override
+    public Optional<byte[]> getObject(final String bucket, final String key) {
+        return Optional.ofNullable(bucket(bucket).get(key)).map(object -> object.bytes.clone());
+    }
+
+    @Override
+    public boolean deleteObject(final String bucket, final String key) {
+        return bucket(bucket).remove(key) != null;
+    }
+
+    @Override
+    public List<StoredFile> listObjects(final String bucket) {
+        List<StoredFile> objects = new ArrayList<>();
+        bucket(bucket).forEach((key, object) -> objects.add(object.toStoredFile(key)));
+        return objects;
+    }
+
+    @Override
+    public Optional<StoredFile> headObject(final String bucket, final String key) {
+        return Optional.ofNullable(bucket(bucket).get(key)).map(object -> object.toStoredFile(key));
+    }
+
+    @Override
+    public String initiateMultipartUpload(final String bucket, final String key) {
+        String uploadId = UUID.randomUUID().toString();
+        uploads.put(uploadId, new ConcurrentHashMap<>());
+        return uploadId;
+    }
+
+    @Override
+    public String uploadPart(final String bucket, final String key, final String uploadId, final int partNumber,
+                             final byte[] bytes, final int offset, final int length) {
+        byte[] part = Arrays.copyOfRange(bytes, offset, offset + length);
+        upload(uploadId).put(partNumber, part);
+        return DigestUtils.md5DigestAsHex(part);
+    }
+
+    @Override
+    public void completeMultipartUpload(final String bucket, final String key, final String uploadId, final List<String> partETags) {
+        Map<Integer, byte[]> parts = upload(uploadId);
+        ByteArrayOutputStream object = new ByteArrayOutputStream();
+        for (int partNumber = 1; partNumber <= partETags.size(); partNumber++) {
+            byte[] part = parts.get(partNumber);
+            if (part == null || !DigestUtils.md5DigestAsHex(part).equals(partETags.get(partNumber - 1))) {
+                throw new IllegalStateException("Part " + partNumber + " of upload " + uploadId + " is missing or does not match");
+            }
+            object.write(part, 0, part.length);
+        }
+        uploads.remove(uploadId);
+        bucket(bucket).put(key, new StoredObject(object.toByteArray(), System.currentTimeMillis()));
+    }
+
+    @Override
+    public void abortMultipartUpload(final String bucket, final String key, final String uploadId) {
+        uploads.remove(uploadId);
+    }
+
+    private ConcurrentMap<String, StoredObject> bucket(final String bucket) {
+        return buckets.computeIfAbsent(bucket, name -> new ConcurrentHashMap<>());
+    }
+
+    private Map<Integer, byte[]> upload(final String uploadId) {
+        Map<Integer, byte[]> parts = uploads.get(uploadId);
+        if (parts == null) {
+            throw new IllegalStateException("Unknown upload " + uploadId);
+        }
+        return parts;
+    }
+
+    private static final class StoredObject {
+        private final byte[] bytes;
+        private final long lastModified;
+
+        private StoredObject(final byte[] bytes, final long lastModified) {
+            this.bytes = bytes;
+            this.lastModified = lastModified;
+        }
+
+        private StoredFile toStoredFile(final String key) {
+            return new StoredFile(key, bytes.length, lastModified);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.storage;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.frequentis.tdd.data.Randoms;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class ObjectStoreStorageTest {
+    private static final int PART_SIZE = 4;
+
+    private ObjectStoreStorage sut;
+    private ObjectStoreClient client;
+
+    @Before
+    public void setUp() {
+        client = spy(new InMemoryObjectStoreClient());
+        sut = new ObjectStoreStorage(client, "bucket", PART_SIZE, Executors.newFixedThreadPool(4));
+    }
+
+    @After
+    public void tearDown() {
+        sut.shutdown();
+    }
+
+    @Test
+    public void store_fileLargerThanPartSize_uploadsParts() throws IOException {
+        // Given
+        String name = Randoms.randomAlphanumeric("fileName_");
+        byte[] bytes = "0123456789".getBytes();
+
+        // When
+        sut.store(name, bytes);
+
+        // Then
+        verify(client, times(3)).uploadPart(eq("bucket"), eq(name), anyString(), anyInt(), any(byte[].class), anyInt(), anyInt());
+        assertThat("Expected parts to be joined in order", sut.get(name).get(), equalTo(bytes));
+    }
+
+    @Test
+    public void store_smallFile_storesSingleObject() throws IOException {
+        // Given
+        String name = Randoms.randomAlphanumeric("fileName_");
+        byte[] bytes = "012".getBytes();
+
+        // When
+        sut.store(name, bytes);
+
+        // Then
+        verify(client).putObject("bucket", name, bytes);
+    }
+
+    @Test
+    public void list_storedFiles_returnsMetadata() throws IOException {
+        // Given
+        String name = Randoms.randomAlphanumeric("fileName_");
+        sut.store(name, "0123456789".getBytes());
+
+        // When
+        List<StoredFile> files = sut.list();
+
+        // Then
+        assertThat("Expected one stored file", files.size(), equalTo(1));
+        assertThat("Expected size of stored file", files.get(0).getSize(), equalTo(10L));
+    }
+
+    @Test
+    public void delete_storedFile_removesFile() throws IOException {
+        // Given
+        String name = Randoms.randomAlphanumeric("fileName_");
+        sut.store(name, "012".getBytes());
+
+        // When
+        sut.delete(name);
+
+        // Then
+        assertThat("Expected file to be removed", sut.metadata(name).isPresent(), equalTo(false));
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.storage;
+
+import java.util.Arrays;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.frequentis.tdd.data.Randoms;
+import com.frequentis.tdd.exceptions.StorageQuotaExceededException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.mock;
+
+public class StorageQuotaTest {
+    private static final long GLOBAL_BYTES = 100;
+    private static final long PER_USER_BYTES = 60;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private FileStorage fileStorage;
+    private StorageQuota sut;
+
+    @Before
+    public void setUp() {
+        fileStorage = mock(FileStorage.class);
+        sut = new StorageQuota(fileStorage, GLOBAL_BYTES, PER_USER_BYTES, 0, Randoms.randomAlphanumeric("missingPath_"), "filesystem", 2, 0);
+    }
+
+    @Test
+    public void reserve_committed_accountsBytesToOwnerAndGlobal() {
+        // When
+        try (StorageQuota.Reservation reservation = sut.reserve("owner", "file", 10)) {
+            reservation.commit();
+        }
+
+        // Then
+        assertThat("Expected owner usage", sut.usedBytes("owner"), equalTo(10L));
+        assertThat("Expected global usage", sut.usedBytes(), equalTo(10L));
+    }
+
+    @Test
+    public void reserve_notCommitted_releasesBytes() {
+        // When
+        try (StorageQuota.Reservation ignored = sut.reserve("owner", "file", 10)) {
+            // store failed
+        }
+
+        // Then
+        assertThat("Expected global usage released", sut.usedBytes(), equalTo(0L));
+    }
+
+    @Test
+    public void reserve_fileReplaced_accountsOnlyNewSize() {
+        // Given
+        try (StorageQuota.Reservation reservation = sut.reserve("owner", "file", 10)) {
+            reservation.commit();
+        }
+
+        // When
+        try (StorageQuota.Reservation reservation = sut.reserve("owner", "file", 25)) {
+            reservation.commit();
+        }
+
+        // Then
+        assertThat("Expected usage of replacing file only", sut.usedBytes("owner"), equalTo(25L));
+    }
+
+    @Test
+    public void release_committedFile_releasesBytesOfOwner() {
+        // Given
+        try (StorageQuota.Reservation reservation = sut.reserve("owner", "file", 10)) {
+            reservation.commit();
+        }
+
+        // When
+        sut.release("file");
+
+        // Then
+        assertThat("Expected owner usage released", sut.usedBytes("owner"), equalTo(0L));
+        assertThat("Expected global usage released", sut.usedBytes(), equalTo(0L));
+    }
+
+    @Test
+    public void reserve_objectStoreWithLowLocalDiskSpace_ignoresLocalDisk() {
+        // Given
+        sut = new StorageQuota(fileStorage, GLOBAL_BYTES, PER_USER_BYTES, Long.MAX_VALUE, temporaryFolder.getRoot().toString(), "objectstore", 2, 0);
+
+        // When
+        try (StorageQuota.Reservation reservation = sut.reserve("owner", "file", 10)) {
+            reservation.commit();
+        }
+
+        // Then
+        assertThat("Expected owner usage", sut.usedBytes("owner"), equalTo(10L));
+    }
+
+    @Test(expected = StorageQuotaExceededException.class)
+    public void reserve_fileSystemWithLowDiskSpace_throwsStorageQuotaExceededException() {
+        // Given
+        sut = new StorageQuota(fileStorage, GLOBAL_BYTES, PER_USER_BYTES, Long.MAX_VALUE, temporaryFolder.getRoot().toString(), "filesystem", 2, 0);
+
+        // When
+        sut.reserve("owner", "file", 10);
+
+        // Then
+        // throws exception
+    }
+
+    @Test(expected = StorageQuotaExceededException.class)
+    public void reserve_perUserQuotaExceeded_throwsStorageQuotaExceededException() {
+        // When
+        sut.reserve("owner", "file", PER_USER_BYTES + 1);
+
+        // Then
+        // throws exception
+    }
+
+    @Test(expected = StorageQuotaExceededException.class)
+    public void admit_globalQuotaExceeded_throwsStorageQuotaExceededException() {
+        // When
+        sut.admit("owner", GLOBAL_BYTES + 1);
+
+        // Then
+        // throws exception
+    }
+
+    @Test(expected = StorageQuotaExceededException.class)
+    public void admit_ownerQuotaExceeded_throwsStorageQuotaExceededException() {
+        // Given
+        try (StorageQuota.Reservation reservation = sut.reserve("owner", "file", PER_USER_BYTES)) {
+            reservation.commit();
+        }
+
+        // When
+        sut.admit("owner", 1);
+
+        // Then
+        // throws exception
+    }
+
+    @Test
+    public void admit_otherOwnerOverQuota_admitsUpload() {
+        // Given
+        try (StorageQuota.Reservation reservation = sut.reserve("owner", "file", PER_USER_BYTES)) {
+            reservation.commit();
+        }
+
+        // When
+        try (StorageQuota.WriteSlot ignored = sut.admit("otherOwner", 1)) {
+            // Then
+            assertThat("Expected usage of other owner unchanged", sut.usedBytes("otherOwner"), equalTo(0L));
+        }
+    }
+
+    @Test
+    public void load_storedFiles_accountsBytesToOwners() {
+        // When
+        sut.load(Arrays.asList(new StoredFile("tenant.1.image.png", 10, 0), new StoredFile("tenant.anonymous.image", 5, 0)));
+
+        // Then
+        assertThat("Expected user usage", sut.usedBytes("tenant:1"), equalTo(10L));
+        assertThat("Expected anonymous usage", sut.usedBytes("tenant:anonymous"), equalTo(5L));
+        assertThat("Expected global usage", sut.usedBytes(), equalTo(15L));
+    }
+
+    @Test
+    public void release_loadedFile_releasesBytesOfOwner() {
+        // Given
+        sut.load(Arrays.asList(new StoredFile("tenant.1.image.png", 10, 0)));
+
+        // When
+        sut.release("tenant.1.image.png");
+
+        // Then
+        assertThat("Expected owner usage released", sut.usedBytes("tenant:1"), equalTo(0L));
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.tenant;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class TenantRegistryTest {
+    private TenantRegistry sut;
+
+    @Before
+    public void setUp() {
+        sut = new TenantRegistry("keyA:tenantA, keyB:tenantB");
+    }
+
+    @Test
+    public void tenantOf_configuredKey_returnsTenantOfKey() {
+        // When
+        String actualTenant = sut.tenantOf("keyB");
+
+        // Then
+        assertThat("Expected tenant of key", actualTenant, equalTo("tenantB"));
+    }
+
+    @Test
+    public void tenantOf_noKey_returnsDefaultTenant() {
+        // When
+        String actualTenant = sut.tenantOf(null);
+
+        // Then
+        assertThat("Expected default tenant", actualTenant, equalTo(TenantContext.DEFAULT_TENANT));
+    }
+
+    @Test
+    public void tenantOf_unknownKey_returnsNull() {
+        // When
+        String actualTenant = sut.tenantOf("tenantA");
+
+        // Then
+        assertThat("Expected no tenant for unknown key", actualTenant, nullValue());
+    }
+
+    @Test
+    public void isKnown_unconfiguredTenant_returnsFalse() {
+        // When
+        boolean known = sut.isKnown("other");
+
+        // Then
+        assertThat("Expected tenant not known", known, equalTo(false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_invalidTenantId_throwsIllegalArgumentException() {
+        // When
+        new TenantRegistry("key:tenant.with.dots");
+
+        // Then
+        // throws exception
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.throttling;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.CounterService;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.frequentis.tdd.exceptions.ServiceOverloadedException;
+import com.frequentis.tdd.exceptions.TooManyRequestsException;
+import com.frequentis.tdd.tenant.TenantContext;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.mock;
+
+public class AdmissionControlInterceptorTest {
+    private AdmissionControlInterceptor sut;
+
+    @Before
+    public void setUp() {
+        sut = new AdmissionControlInterceptor(new RateLimiter(1, 1, 1, 1, 1, 1, 100), mock(CounterService.class), 1);
+    }
+
+    @After
+    public void tearDown() {
+        TenantContext.clear();
+    }
+
+    @Test(expected = TooManyRequestsException.class)
+    public void preHandle_clientBudgetExhausted_throwsTooManyRequestsException() throws Exception {
+        // Given
+        sut.preHandle(request("10.0.0.1"), new MockHttpServletResponse(), null);
+        sut.afterCompletion(request("10.0.0.1"), new MockHttpServletResponse(), null, null);
+
+        // When
+        sut.preHandle(request("10.0.0.1"), new MockHttpServletResponse(), null);
+
+        // Then
+        // throws exception
+    }
+
+    @Test(expected = ServiceOverloadedException.class)
+    public void preHandle_maxRequestsInFlight_throwsServiceOverloadedException() throws Exception {
+        // Given
+        sut.preHandle(request("10.0.0.1"), new MockHttpServletResponse(), null);
+
+        // When
+        sut.preHandle(request("10.0.0.2"), new MockHttpServletResponse(), null);
+
+        // Then
+        // throws exception
+    }
+
+    @Test
+    public void afterCompletion_requestAdmitted_releasesInFlightSlot() throws Exception {
+        // Given
+        MockHttpServletRequest request = request("10.0.0.1");
+        sut.preHandle(request, new MockHttpServletResponse(), null);
+
+        // When
+        sut.afterCompletion(request, new MockHttpServletResponse(), null, null);
+
+        // Then
+        assertThat("Expected no request in flight", sut.inFlightRequests(), equalTo(0));
+    }
+
+    @Test
+    public void client_authenticatedTenant_sharesBudgetAcrossAddresses() throws Exception {
+        // Given
+        TenantContext.set("acme");
+
+        // When
+        String client = AdmissionControlInterceptor.client(request("10.0.0.1"));
+
+        // Then
+        assertThat("Expected tenant to identify the client", client, equalTo(AdmissionControlInterceptor.client(request("10.0.0.2"))));
+    }
+
+    @Test
+    public void client_anonymous_identifiedByAddress() throws Exception {
+        // When
+        String client = AdmissionControlInterceptor.client(request("10.0.0.1"));
+
+        // Then
+        assertThat("Expected address to identify the client", client, equalTo("10.0.0.1"));
+    }
+
+    private static MockHttpServletRequest request(final String remoteAddress) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/user/");
+        request.setRemoteAddr(remoteAddress);
+        return request;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.throttling;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class RateLimiterTest {
+    private static final String CLIENT = "10.0.0.1";
+
+    @Test
+    public void tryAcquire_clientIdleUntilBucketRefilled_dropsBucket() throws Exception {
+        // Given
+        RateLimiter sut = new RateLimiter(1000, 1, 1000, 1, 1000, 1, 100);
+        sut.tryAcquire(CLIENT, EndpointClass.READ);
+
+        // When
+        Thread.sleep(50);
+
+        // Then
+        assertThat("Expected idle bucket to be evicted", sut.trackedClients(EndpointClass.READ), equalTo(0L));
+    }
+
+    @Test
+    public void tryAcquire_moreClientsThanLimit_keepsAtMostLimit() throws Exception {
+        // Given
+        RateLimiter sut = new RateLimiter(1, 1, 1, 1, 1, 1, 10);
+
+        // When
+        for (int i = 0; i < 100; i++) {
+            sut.tryAcquire("client" + i, EndpointClass.WRITE);
+        }
+
+        // Then
+        assertThat("Expected bucket count to be bounded", sut.trackedClients(EndpointClass.WRITE) <= 10, equalTo(true));
+    }
+
+    @Test
+    public void tryAcquire_limitReached_keepsExhaustedBucketOfExistingClient() throws Exception {
+        // Given
+        RateLimiter sut = new RateLimiter(1, 1, 1, 1, 1, 1, 2);
+        sut.tryAcquire(CLIENT, EndpointClass.WRITE);
+        sut.tryAcquire("other", EndpointClass.WRITE);
+
+        // When
+        boolean newClientAcquired = sut.tryAcquire("third", EndpointClass.WRITE);
+        boolean existingClientAcquired = sut.tryAcquire(CLIENT, EndpointClass.WRITE);
+
+        // Then
+        assertThat("Expected new client to be rejected while limit is reached", newClientAcquired, equalTo(false));
+        assertThat("Expected existing client to keep its exhausted bucket", existingClientAcquired, equalTo(false));
+    }
+
+    @Test
+    public void tryAcquire_budgetExhausted_returnsFalse() throws Exception {
+        // Given
+        RateLimiter sut = new RateLimiter(1, 1, 1, 1, 1, 1, 10);
+        sut.tryAcquire(CLIENT, EndpointClass.UPLOAD);
+
+        // When
+        boolean acquired = sut.tryAcquire(CLIENT, EndpointClass.UPLOAD);
+
+        // Then
+        assertThat("Expected second upload within a second to be rejected", acquired, equalTo(false));
+    }
+}
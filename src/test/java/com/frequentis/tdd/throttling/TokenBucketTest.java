@@ -0,0 +1,55 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.throttling;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class TokenBucketTest {
+    private static final long NOW = 1_000_000L;
+
+    @Test
+    public void tryAcquire_withinCapacity_returnsTrue() {
+        // Given
+        TokenBucket sut = new TokenBucket(10, 3, NOW);
+
+        // When
+        boolean acquired = sut.tryAcquire(NOW) && sut.tryAcquire(NOW) && sut.tryAcquire(NOW);
+
+        // Then
+        assertThat("Expected burst up to capacity to be accepted", acquired, equalTo(true));
+    }
+
+    @Test
+    public void tryAcquire_capacityExhausted_returnsFalse() {
+        // Given
+        TokenBucket sut = new TokenBucket(10, 2, NOW);
+        sut.tryAcquire(NOW);
+        sut.tryAcquire(NOW);
+
+        // When
+        boolean acquired = sut.tryAcquire(NOW);
+
+        // Then
+        assertThat("Expected request over capacity to be rejected", acquired, equalTo(false));
+    }
+
+    @Test
+    public void tryAcquire_afterRefillInterval_returnsTrue() {
+        // Given
+        TokenBucket sut = new TokenBucket(10, 1, NOW);
+        sut.tryAcquire(NOW);
+
+        // When
+        boolean acquired = sut.tryAcquire(NOW + TimeUnit.MILLISECONDS.toNanos(100));
+
+        // Then
+        assertThat("Expected token to be refilled", acquired, equalTo(true));
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * COPYRIGHT: FREQUENTIS AG. All rights reserved.
+ *            Registered with Commercial Court Vienna,
+ *            reg.no. FN 72.115b.
+ */
+package com.frequentis.tdd.tracing;
+
+import java.util.List;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.lessThan;
+
+public class SlowRequestLogTest {
+
+    @After
+    public void tearDown() {
+        Tracing.end();
+    }
+
+    @Test
+    public void record_traceAboveThreshold_keepsTraceWithSpanBreakdown() throws Exception {
+        // Given
+        SlowRequestLog sut = new SlowRequestLog(0, 10, 60_000);
+        Trace trace = traceWithSpan("GET /user/1", 5);
+
+        // When
+        sut.record(trace);
+
+        // Then
+        List<Trace> slowest = sut.slowest();
+        assertThat("Expected trace to be kept", slowest.size(), equalTo(1));
+        assertThat("Expected repository span in breakdown", slowest.get(0).getBreakdownMillis(), hasKey("repository.findOne"));
+    }
+
+    @Test
+    public void record_traceBelowThreshold_dropsTrace() throws Exception {
+        // Given
+        SlowRequestLog sut = new SlowRequestLog(60_000, 10, 60_000);
+
+        // When
+        sut.record(traceWithSpan("GET /user/1", 0));
+
+        // Then
+        assertThat("Expected fast trace to be dropped", sut.slowest().isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void slowest_capacityExceeded_keepsMostRecentSlowestFirst() throws Exception {
+        // Given
+        SlowRequestLog sut = new SlowRequestLog(0, 2, 60_000);
+        sut.record(traceWithSpan("fast", 0));
+        sut.record(traceWithSpan("slow", 20));
+        sut.record(traceWithSpan("medium", 10));
+
+        // When
+        List<Trace> slowest = sut.slowest();
+
+        // Then
+        assertThat("Expected capacity to be respected", slowest.size(), equalTo(2));
+        assertThat("Expected slowest request first", slowest.get(0).getRequest(), equalTo("slow"));
+    }
+
+    @Test
+    public void slowest_traceOlderThanWindow_dropsTrace() throws Exception {
+        // Given
+        SlowRequestLog sut = new SlowRequestLog(0, 10, 1000);
+        Trace trace = traceWithSpan("GET /user/1", 0);
+        sut.record(trace);
+
+        // When
+        List<Trace> slowest = sut.slowest(trace.getStartMillis() + 1001);
+
+        // Then
+        assertThat("Expected old trace to be dropped", slowest.isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void finish_handlerWithNestedSpan_recordsControllerTimeWithoutNestedSpan() throws Exception {
+        // Given
+        Trace trace = new Trace("GET /user/1");
+        Tracing.begin(trace);
+        trace.startHandler();
+        try (Span ignored = Tracing.span("repository.findOne")) {
+            Thread.sleep(20);
+        }
+
+        // When
+        Tracing.end().finish();
+
+        // Then
+        assertThat("Expected controller span in breakdown", trace.getBreakdownMillis(), hasKey(Trace.CONTROLLER));
+        assertThat("Expected nested span not counted for controller",
+                   trace.getBreakdownMillis().get(Trace.CONTROLLER), lessThan(20.0));
+    }
+
+    private static Trace traceWithSpan(final String request, final long spanMillis) throws InterruptedException {
+        Trace trace = new Trace(request);
+        Tracing.begin(trace);
+        try (Span ignored = Tracing.span("repository.findOne")) {
+            Thread.sleep(spanMillis);
+        }
+        Tracing.end().finish();
+        return trace;
+    }
+}